@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import java.util.Arrays;
+
+/**
+ * Decoder of Cayenne LPP payloads, as carried base64-encoded in <code>frm_payload</code> of TTN
+ * uplinks.
+ *
+ * <p>Each LPP entry consists of a channel, a data type and a value. Data types are IPSO object IDs
+ * minus 3200, so every entry is reported directly as an OID, along with its channel, which the
+ * proxy uses as the Instance ID. Sizes and resolutions of the values are looked up in tables
+ * indexed by the data type, and the payload is decoded into a reused buffer, so decoding does not
+ * allocate.
+ *
+ * <p>The decoder is not thread-safe.
+ */
+final class CayenneLppDecoder {
+    /** Receives entries of a decoded payload. */
+    interface Handler {
+        void onValue(int oid, int channel, double value);
+
+        /** Called for multi-axis entries; for GPS location, x, y and z are lat, lon and alt. */
+        void onVector(int oid, int channel, double x, double y, double z);
+    }
+
+    private static final int IPSO_OID_OFFSET = 3200;
+
+    // Indexed by LPP data type. A size of 0 means that the type is not supported.
+    private static final int[] SIZE = new int[256];
+    private static final int[] AXES = new int[256];
+    // Raw values are divided by these rather than multiplied by the resolution, so that e.g. 272
+    // yields exactly 27.2.
+    private static final double[] DIVISOR = new double[256];
+    private static final boolean[] SIGNED = new boolean[256];
+
+    private static void defineType(int type, int size, int axes, double divisor, boolean signed) {
+        SIZE[type] = size;
+        AXES[type] = axes;
+        DIVISOR[type] = divisor;
+        SIGNED[type] = signed;
+    }
+
+    static {
+        defineType(0, 1, 1, 1.0, false); // Digital Input
+        defineType(1, 1, 1, 1.0, false); // Digital Output
+        defineType(2, 2, 1, 100.0, true); // Analog Input
+        defineType(3, 2, 1, 100.0, true); // Analog Output
+        defineType(101, 2, 1, 1.0, false); // Illuminance, lux
+        defineType(102, 1, 1, 1.0, false); // Presence
+        defineType(103, 2, 1, 10.0, true); // Temperature, Cel
+        defineType(104, 1, 1, 2.0, false); // Humidity, %RH
+        defineType(113, 6, 3, 1000.0, true); // Accelerometer, G
+        defineType(115, 2, 1, 10.0, false); // Barometer, hPa
+        defineType(134, 6, 3, 100.0, true); // Gyrometer, deg/s
+        defineType(136, 9, 3, 10000.0, true); // GPS Location, deg (altitude divided below)
+    }
+
+    private static final int GPS_LOCATION = 136;
+    private static final double GPS_ALTITUDE_DIVISOR = 100.0;
+
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); ++i) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private byte[] buffer = new byte[64];
+    private int length;
+
+    /**
+     * Decodes a base64-encoded payload and passes its entries to <code>handler</code>. The whole
+     * payload is validated first, so that no entries are reported if it is malformed.
+     *
+     * @param base64Payload Base64-encoded LPP payload.
+     * @param handler Receiver of the entries.
+     * @return False if the payload is empty, or is not valid base64 or Cayenne LPP.
+     */
+    boolean decode(CharSequence base64Payload, Handler handler) {
+        if (!decodeBase64(base64Payload) || length == 0 || !validate()) {
+            return false;
+        }
+        int offset = 0;
+        while (offset < length) {
+            int channel = buffer[offset] & 0xFF;
+            int type = buffer[offset + 1] & 0xFF;
+            offset += 2;
+            int oid = IPSO_OID_OFFSET + type;
+            int axisSize = SIZE[type] / AXES[type];
+            if (AXES[type] == 1) {
+                handler.onValue(oid, channel, readRaw(offset, axisSize, type) / DIVISOR[type]);
+            } else {
+                double x = readRaw(offset, axisSize, type) / DIVISOR[type];
+                double y = readRaw(offset + axisSize, axisSize, type) / DIVISOR[type];
+                int rawZ = readRaw(offset + 2 * axisSize, axisSize, type);
+                double z = rawZ / (type == GPS_LOCATION ? GPS_ALTITUDE_DIVISOR : DIVISOR[type]);
+                handler.onVector(oid, channel, x, y, z);
+            }
+            offset += SIZE[type];
+        }
+        return true;
+    }
+
+    private boolean validate() {
+        int offset = 0;
+        while (offset < length) {
+            if (length - offset < 2) {
+                return false;
+            }
+            int size = SIZE[buffer[offset + 1] & 0xFF];
+            if (size == 0 || length - offset - 2 < size) {
+                return false;
+            }
+            offset += 2 + size;
+        }
+        return true;
+    }
+
+    private int readRaw(int offset, int size, int type) {
+        int value = 0;
+        for (int i = 0; i < size; ++i) {
+            value = (value << 8) | (buffer[offset + i] & 0xFF);
+        }
+        if (SIGNED[type]) {
+            int unusedBits = 32 - 8 * size;
+            value = (value << unusedBits) >> unusedBits;
+        }
+        return value;
+    }
+
+    private boolean decodeBase64(CharSequence input) {
+        int inputLength = input.length();
+        while (inputLength > 0 && input.charAt(inputLength - 1) == '=') {
+            --inputLength;
+        }
+        if (inputLength % 4 == 1) {
+            return false;
+        }
+        int outputLength = inputLength * 3 / 4;
+        if (buffer.length < outputLength) {
+            buffer = new byte[Math.max(outputLength, 2 * buffer.length)];
+        }
+        int bits = 0;
+        int bitCount = 0;
+        length = 0;
+        for (int i = 0; i < inputLength; ++i) {
+            char c = input.charAt(i);
+            int value = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+            if (value < 0) {
+                return false;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                buffer[length++] = (byte) (bits >> bitCount);
+            }
+        }
+        return true;
+    }
+}
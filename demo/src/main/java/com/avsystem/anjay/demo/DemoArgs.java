@@ -241,6 +241,67 @@ public class DemoArgs {
     @Parameter(names = "--nstart", description = "Configures NSTART (defined in RFC7252)")
     public Integer nstart = 1;
 
+    @Parameter(
+            names = "--max-devices",
+            description =
+                    "Maximum number of proxied LoRaWAN devices served at the same time; the least"
+                            + " recently active one is evicted when the limit is reached")
+    public Integer maxDevices = 5000;
+
+    @Parameter(
+            names = "--device-idle-timeout",
+            description =
+                    "Time (in seconds) after which the client of a proxied device that did not send"
+                            + " any uplink is closed",
+            converter = DurationConverter.class)
+    public Duration deviceIdleTimeout = Duration.ofHours(1);
+
+    @Parameter(
+            names = "--event-loop-threads",
+            description = "Number of threads serving the clients of proxied devices")
+    public Integer eventLoopThreads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(
+            names = "--ingest-threads",
+            description = "Number of threads parsing uplinks received over MQTT")
+    public Integer ingestThreads = 2;
+
+    @Parameter(
+            names = "--ingest-queue-capacity",
+            description = "Maximum number of received uplinks waiting to be parsed")
+    public Integer ingestQueueCapacity = 10000;
+
+    @Parameter(
+            names = "--ingest-device-backlog",
+            description =
+                    "Maximum number of uplinks of a single device waiting to be parsed, if the"
+                            + " ingest policy is DROP_OLDEST or COALESCE")
+    public Integer ingestDeviceBacklog = 16;
+
+    @Parameter(
+            names = "--ingest-policy",
+            description =
+                    "Handling of uplinks that do not fit in the ingest queue: BLOCK (wait for"
+                            + " room), DROP_OLDEST (discard the oldest pending uplink of the same"
+                            + " device) or COALESCE (merge values into the latest pending value of"
+                            + " each sensor of the device)")
+    public UplinkIngestQueue.Policy ingestPolicy = UplinkIngestQueue.Policy.DROP_OLDEST;
+
+    @Parameter(
+            names = "--downlink-policy",
+            description =
+                    "TTN operation used for downlinks: REPLACE (the downlinks queued for the"
+                            + " device) or PUSH (append to the queue of the device)")
+    public MqttMessageSender.Policy downlinkPolicy = MqttMessageSender.Policy.REPLACE;
+
+    @Parameter(
+            names = "--downlink-window",
+            description =
+                    "Time (in seconds) during which LwM2M writes to a device are collapsed into a"
+                            + " single downlink",
+            converter = DurationConverter.class)
+    public Duration downlinkWindow = Duration.ofMillis(500);
+
     @Parameter(
             names = {"-h", "--help"},
             description = "shows this message and exits",
@@ -33,10 +33,8 @@ import java.nio.file.Paths;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
-import java.time.Instant;
+import java.time.Duration;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,7 +46,6 @@ public final class DemoClient implements Runnable {
     private AnjayAccessControl accessControl;
     private DemoCommands demoCommands;
     public DemoArgs args;
-    private DigitalOutput output;
 
     class FirmwareUpdateHandlers implements AnjayFirmwareUpdateHandlers {
         private File file;
@@ -265,7 +262,7 @@ public final class DemoClient implements Runnable {
     @Override
     public void run() {
         try (Anjay anjay = new Anjay(this.config);
-                AnjayEventLoop eventLoop = new AnjayEventLoop(anjay, 100L)) {
+                AnjayEventLoop eventLoop = new AnjayEventLoop(anjay, 1000L)) {
             Thread stdinThread =
                     new Thread(
                             () -> {
@@ -319,59 +316,8 @@ public final class DemoClient implements Runnable {
 
             Logger.getAnonymousLogger().log(Level.INFO, "*** DEMO STARTUP FINISHED ***");
 
-            output = DigitalOutput.install(anjay);
-            output.instanceAdd(
-                    0,
-                    "LED Control",
-                    new Supplier<>() {
-                        @Override
-                        public Boolean get() {
-                            return RegisteredObjects.led.getState();
-                        }
-                    });
-
-            AnjayBasicIpsoSensor thermometer = AnjayBasicIpsoSensor.install(anjay, 3303);
-            thermometer.instanceAdd(
-                    0,
-                    "Celcius",
-                    Optional.of(-200.0),
-                    Optional.of(200.0),
-                    new Supplier<>() {
-                        @Override
-                        public Double get() {
-                            return RegisteredObjects.thermometer.getValue();
-                        }
-                    });
-
-            Anjay3dIpsoSensor accelerometerObject = Anjay3dIpsoSensor.install(anjay, 3313);
-
-
-            accelerometerObject.instanceAdd(
-                    0,
-                    "m/s2",
-                    Optional.of(-100.0),
-                    Optional.of(100.0),
-                    new Supplier<Anjay3dIpsoSensor.Coordinates>() {
-                        @Override
-                        public Anjay3dIpsoSensor.Coordinates get() {
-                            return new Anjay3dIpsoSensor.Coordinates(
-                                    RegisteredObjects.accelerometer.getX(),
-                                    RegisteredObjects.accelerometer.getY(),
-                                    RegisteredObjects.accelerometer.getZ());
-                        }
-                    });
-
-            eventLoop.scheduleTask(
-                    new Consumer<>() {
-                        @Override
-                        public void accept(AnjayEventLoop eventLoop) {
-                            maybePersistState();
-                            thermometer.update(0);
-                            accelerometerObject.update(0);
-                            eventLoop.scheduleTask(this, Instant.now().plusMillis(2000L));
-                        }
-                    },
-                    Instant.now().plusMillis(2000L));
+            eventLoop.scheduleAtFixedRate(
+                    loop -> maybePersistState(), Duration.ofSeconds(2), Duration.ofSeconds(2));
 
             try {
                 eventLoop.run();
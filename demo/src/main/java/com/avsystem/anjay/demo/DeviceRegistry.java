@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import com.avsystem.anjay.AnjayEventLoopGroup;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of {@link ProxiedDevice} clients, keyed by DevEUI. Clients are created lazily, on the
+ * first uplink of a device, and closed once the device stays silent for longer than the configured
+ * idle timeout. At most {@link DemoArgs#maxDevices} clients exist at the same time, including the
+ * ones being created; when the limit is reached, the least recently active one is evicted to make
+ * room for a new one.
+ *
+ * <p>Clients are kept in a map ordered by the time of their most recent uplink, so that both
+ * finding the client to evict and finding idle ones take time proportional to the number of
+ * evicted clients only.
+ *
+ * <p>All clients are served by a shared {@link AnjayEventLoopGroup} with {@link
+ * DemoArgs#eventLoopThreads} threads.
+ */
+public final class DeviceRegistry implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(DeviceRegistry.class.getName());
+
+    private final DemoArgs args;
+    private final int maxDevices;
+    private final long idleTimeoutNanos;
+    private final ScheduledExecutorService evictionExecutor;
+    private final AnjayEventLoopGroup eventLoopGroup;
+    private final MqttMessageSender downlinkSender;
+
+    private final Object lock = new Object();
+    // Least recently active first; guarded by lock, like the fields below.
+    private final LinkedHashMap<String, ProxiedDevice> devices =
+            new LinkedHashMap<>(16, 0.75f, true);
+    // Clients being created outside the lock; each of them has a slot reserved.
+    private final Map<String, CompletableFuture<ProxiedDevice>> pendingDevices = new HashMap<>();
+    private boolean closed = false;
+
+    /**
+     * @param args Arguments of the demo.
+     * @param downlinkSender Sender of downlinks, shared by all clients.
+     */
+    public DeviceRegistry(DemoArgs args, MqttMessageSender downlinkSender) throws IOException {
+        if (args.maxDevices <= 0) {
+            throw new IllegalArgumentException("Maximum number of devices must be positive");
+        }
+        this.args = args;
+        this.downlinkSender = downlinkSender;
+        this.maxDevices = args.maxDevices;
+        this.idleTimeoutNanos = args.deviceIdleTimeout.toNanos();
+        // Wakeups are not needed to pick up submitted tasks, so a long maximum wait time is fine.
+        this.eventLoopGroup = new AnjayEventLoopGroup(args.eventLoopThreads, 1000L);
+        this.evictionExecutor =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "device-registry-eviction");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        long periodMs = Math.max(1000L, args.deviceIdleTimeout.toMillis() / 4);
+        this.evictionExecutor.scheduleWithFixedDelay(
+                this::evictIdle, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static String normalizeDevEui(String devEui) {
+        return devEui.toLowerCase();
+    }
+
+    /** @return Number of currently existing clients. */
+    public int size() {
+        synchronized (lock) {
+            return devices.size();
+        }
+    }
+
+    /**
+     * Passes the client of a given device to <code>handler</code>, creating the client if it does
+     * not exist yet, and marks the device as active.
+     *
+     * @param devEui DevEUI of the end device.
+     * @param topicBase MQTT topic prefix of the end device.
+     * @param handler Code that updates the client with data received from the device.
+     * @throws Exception If the client could not be created.
+     */
+    public void withDevice(String devEui, String topicBase, Consumer<ProxiedDevice> handler)
+            throws Exception {
+        String key = normalizeDevEui(devEui);
+        while (true) {
+            ProxiedDevice device = getOrCreateDevice(key, topicBase);
+            handler.accept(device);
+            if (device.uplinkProcessed()) {
+                return;
+            }
+            // The client has been evicted concurrently, try again with a fresh one.
+            synchronized (lock) {
+                devices.remove(key, device);
+            }
+        }
+    }
+
+    private ProxiedDevice getOrCreateDevice(String key, String topicBase) throws Exception {
+        List<ProxiedDevice> evicted = new ArrayList<>();
+        CompletableFuture<ProxiedDevice> creation;
+        boolean creator = false;
+        synchronized (lock) {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Device registry is closed");
+                }
+                // Moves the device to the end of the access order.
+                ProxiedDevice device = devices.get(key);
+                if (device != null) {
+                    return device;
+                }
+                creation = pendingDevices.get(key);
+                if (creation != null) {
+                    break;
+                }
+                if (devices.size() + pendingDevices.size() < maxDevices) {
+                    creation = new CompletableFuture<>();
+                    pendingDevices.put(key, creation);
+                    creator = true;
+                    break;
+                }
+                if (devices.isEmpty()) {
+                    // All slots are taken by clients being created.
+                    lock.wait();
+                } else {
+                    Iterator<ProxiedDevice> eldest = devices.values().iterator();
+                    evicted.add(eldest.next());
+                    eldest.remove();
+                }
+            }
+        }
+        closeEvicted(evicted);
+
+        if (!creator) {
+            try {
+                return creation.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (Exception) e.getCause();
+            }
+        }
+        ProxiedDevice device = null;
+        try {
+            LOGGER.log(Level.INFO, "creating client for device " + key);
+            device = new ProxiedDevice(args, key, topicBase, eventLoopGroup, downlinkSender);
+        } catch (Throwable t) {
+            creation.completeExceptionally(t);
+            throw t;
+        } finally {
+            boolean discard;
+            synchronized (lock) {
+                pendingDevices.remove(key);
+                discard = closed;
+                if (device != null && !closed) {
+                    devices.put(key, device);
+                }
+                lock.notifyAll();
+            }
+            if (device != null && discard) {
+                device.close();
+            }
+        }
+        creation.complete(device);
+        return device;
+    }
+
+    private static void closeEvicted(List<ProxiedDevice> evicted) {
+        for (ProxiedDevice device : evicted) {
+            LOGGER.log(Level.INFO, "closing client for device " + device.getDevEui());
+            device.close();
+        }
+    }
+
+    /** Closes clients of all devices which did not send any uplink within the idle timeout. */
+    public void evictIdle() {
+        List<ProxiedDevice> evicted = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (lock) {
+            Iterator<ProxiedDevice> it = devices.values().iterator();
+            while (it.hasNext()) {
+                ProxiedDevice device = it.next();
+                if (now - device.getLastActivityNanos() <= idleTimeoutNanos) {
+                    break;
+                }
+                evicted.add(device);
+                it.remove();
+            }
+        }
+        closeEvicted(evicted);
+    }
+
+    @Override
+    public void close() throws IOException {
+        evictionExecutor.shutdownNow();
+        List<ProxiedDevice> evicted;
+        synchronized (lock) {
+            closed = true;
+            evicted = new ArrayList<>(devices.values());
+            devices.clear();
+            lock.notifyAll();
+        }
+        closeEvicted(evicted);
+        eventLoopGroup.close();
+    }
+}
@@ -16,10 +16,14 @@ public class DigitalOutput implements AnjayObject {
 
     private static final Integer OUTPUT_OID = 3201;
     private final Anjay anjay;
+    private final String topicBase;
+    private final MqttMessageSender downlinkSender;
     private final Map<Integer, DigitalOutput.Instance> instances = new TreeMap<>();
 
-    public DigitalOutput(Anjay anjay) {
+    public DigitalOutput(Anjay anjay, String topicBase, MqttMessageSender downlinkSender) {
         this.anjay = anjay;
+        this.topicBase = topicBase;
+        this.downlinkSender = downlinkSender;
     }
 
     private class Instance {
@@ -60,7 +64,6 @@ public class DigitalOutput implements AnjayObject {
         }
 
         private void update(){
-            System.out.println("@@@@@ SUPPLIER SAYS THE LED IS " + readOutput.get());
             setOutput(readOutput.get());
         }
         public boolean getOutput() {
@@ -69,9 +72,10 @@ public class DigitalOutput implements AnjayObject {
         }
 
         public void setOutput(boolean output) {
-            this.output = output;
-            anjay.notifyChanged(OUTPUT_OID, iid, Resource.DIGITAL_OUTPUT_STATE);
-
+            if (this.output != output) {
+                this.output = output;
+                anjay.notifyChanged(OUTPUT_OID, iid, Resource.DIGITAL_OUTPUT_STATE);
+            }
         }
     }
 
@@ -112,13 +116,20 @@ public class DigitalOutput implements AnjayObject {
         }
     }
 
+    private static final SortedSet<ResourceDef> RESOURCE_DEFS =
+            Collections.unmodifiableSortedSet(new TreeSet<>(Arrays.asList(
+                    new ResourceDef(Resource.APPLICATION_TYPE, ResourceKind.RW, true),
+                    new ResourceDef(Resource.DIGITAL_OUTPUT_POLARITY, ResourceKind.RW, true),
+                    new ResourceDef(Resource.DIGITAL_OUTPUT_STATE, ResourceKind.RW, true))));
+
     @Override
     public SortedSet<ResourceDef> resources(int iid) {
-        TreeSet<ResourceDef> resourceDefs = new TreeSet<>();
-        resourceDefs.add(new ResourceDef(DigitalOutput.Resource.APPLICATION_TYPE, ResourceKind.RW, true));
-        resourceDefs.add(new ResourceDef(DigitalOutput.Resource.DIGITAL_OUTPUT_POLARITY, ResourceKind.RW, true));
-        resourceDefs.add(new ResourceDef(DigitalOutput.Resource.DIGITAL_OUTPUT_STATE, ResourceKind.RW, true));
-        return resourceDefs;
+        return RESOURCE_DEFS;
+    }
+
+    @Override
+    public long resourcesVersion() {
+        return 0;
     }
 
     @Override
@@ -149,7 +160,7 @@ public class DigitalOutput implements AnjayObject {
                 break;
             case DigitalOutput.Resource.DIGITAL_OUTPUT_STATE:
                 //instances.get(iid).setOutput(context.getBoolean());
-                MqttMessageSender.sendLedDownlink(context.getBoolean());
+                downlinkSender.scheduleLedDownlink(topicBase, context.getBoolean());
                 break;
             default:
                 throw new IllegalArgumentException("Unsupported resource " + rid);
@@ -190,8 +201,9 @@ public class DigitalOutput implements AnjayObject {
         }
     }
 
-    public static DigitalOutput install(Anjay anjay) {
-        DigitalOutput newOutput = new DigitalOutput(anjay);
+    public static DigitalOutput install(Anjay anjay, String topicBase,
+                                        MqttMessageSender downlinkSender) {
+        DigitalOutput newOutput = new DigitalOutput(anjay, topicBase, downlinkSender);
         anjay.registerObject(newOutput);
         return newOutput;
     }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import java.util.Optional;
+
+/**
+ * IPSO sensor objects that the proxy creates for Cayenne LPP data types. Objects are looked up by
+ * OID in a table indexed by the LPP data type (i.e. OID - 3200).
+ *
+ * <p>Only the types whose IPSO objects have the resource layout of {@link
+ * com.avsystem.anjay.AnjayBasicIpsoSensor} (Sensor Value 5700) or {@link
+ * com.avsystem.anjay.Anjay3dIpsoSensor} (X/Y/Z Value 5702-5704) are listed.
+ */
+final class IpsoObjectTable {
+    enum Kind {
+        BASIC,
+        THREE_AXIS
+    }
+
+    static final class Definition {
+        final int oid;
+        final Kind kind;
+        final String unit;
+        final Optional<Double> minRangeValue;
+        final Optional<Double> maxRangeValue;
+
+        private Definition(int oid, Kind kind, String unit, double minRange, double maxRange) {
+            this.oid = oid;
+            this.kind = kind;
+            this.unit = unit;
+            this.minRangeValue = Optional.of(minRange);
+            this.maxRangeValue = Optional.of(maxRange);
+        }
+    }
+
+    static final int FIRST_OID = 3200;
+    static final int SIZE = 256;
+
+    private static final Definition[] DEFINITIONS = new Definition[SIZE];
+
+    private static void define(int oid, Kind kind, String unit, double minRange, double maxRange) {
+        DEFINITIONS[oid - FIRST_OID] = new Definition(oid, kind, unit, minRange, maxRange);
+    }
+
+    // Ranges are the ones representable in Cayenne LPP.
+    static {
+        define(3301, Kind.BASIC, "lx", 0.0, 65535.0); // Illuminance
+        define(3303, Kind.BASIC, "Cel", -3276.8, 3276.7); // Temperature
+        define(3304, Kind.BASIC, "%RH", 0.0, 127.5); // Humidity
+        define(3315, Kind.BASIC, "hPa", 0.0, 6553.5); // Barometer
+        define(3313, Kind.THREE_AXIS, "g", -32.768, 32.767); // Accelerometer
+        define(3334, Kind.THREE_AXIS, "deg/s", -327.68, 327.67); // Gyrometer
+    }
+
+    private IpsoObjectTable() {}
+
+    /** @return Definition of the object, or null if it is not supported. */
+    static Definition get(int oid) {
+        int index = oid - FIRST_OID;
+        return index >= 0 && index < SIZE ? DEFINITIONS[index] : null;
+    }
+}
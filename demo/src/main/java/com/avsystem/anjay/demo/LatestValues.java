@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Most recent values of an end device, one per Object and Instance, merged from decoded uplinks
+ * that did not fit in the {@link UplinkIngestQueue}. A newer value of the same Instance overwrites
+ * the older one, so the size is bounded by the number of Instances the device reports.
+ *
+ * <p>Not thread-safe.
+ */
+final class LatestValues {
+    /** Value of a single Instance: either a single number, kept in x, or a vector. */
+    static final class Slot {
+        final int oid;
+        final int iid;
+        boolean isVector;
+        double x;
+        double y;
+        double z;
+        Instant timestamp;
+
+        private Slot(int oid, int iid) {
+            this.oid = oid;
+            this.iid = iid;
+        }
+    }
+
+    private final Map<Long, Slot> slots = new LinkedHashMap<>();
+    private String deviceKey;
+
+    /** @return DevEUI or Device ID of the device, as reported in its most recent uplink. */
+    String getDeviceKey() {
+        return deviceKey;
+    }
+
+    void setDeviceKey(String deviceKey) {
+        this.deviceKey = deviceKey;
+    }
+
+    void putValue(int oid, int iid, double value, Instant timestamp) {
+        Slot slot = slot(oid, iid);
+        slot.isVector = false;
+        slot.x = value;
+        slot.y = 0.0;
+        slot.z = 0.0;
+        slot.timestamp = timestamp;
+    }
+
+    void putVector(int oid, int iid, double x, double y, double z, Instant timestamp) {
+        Slot slot = slot(oid, iid);
+        slot.isVector = true;
+        slot.x = x;
+        slot.y = y;
+        slot.z = z;
+        slot.timestamp = timestamp;
+    }
+
+    /** Overwrites values of this object with the ones of a newer uplink. */
+    void merge(LatestValues newer) {
+        if (newer.deviceKey != null) {
+            deviceKey = newer.deviceKey;
+        }
+        for (Slot slot : newer.slots.values()) {
+            if (slot.isVector) {
+                putVector(slot.oid, slot.iid, slot.x, slot.y, slot.z, slot.timestamp);
+            } else {
+                putValue(slot.oid, slot.iid, slot.x, slot.timestamp);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    /** @return Values, in the order in which their Instances were first reported. */
+    Collection<Slot> getSlots() {
+        return slots.values();
+    }
+
+    private Slot slot(int oid, int iid) {
+        return slots.computeIfAbsent(((long) oid << 32) | iid, key -> new Slot(oid, iid));
+    }
+}
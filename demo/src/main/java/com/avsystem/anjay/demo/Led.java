@@ -1,15 +1,14 @@
 package com.avsystem.anjay.demo;
 
 public class Led {
-
-    private boolean state = false;
+    // Written by the uplink ingest workers, read on the event loop thread.
+    private volatile boolean state = false;
 
     public boolean getState() {
         return state;
     }
+
     public void setState(boolean state) {
         this.state = state;
-        System.out.println("@@@@@@ SET LED TO " + state);
     }
-
 }
@@ -1,40 +1,221 @@
 package com.avsystem.anjay.demo;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
-public class MqttMessageSender {
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-    public static MqttClient client;
-    private static final String topic = "v3/end-device-test-1@ttn/devices/eui-0080e115000ad365/down/replace";
+/**
+ * Schedules downlinks to the proxied end devices. Writes to a device within the coalescing window
+ * are collapsed into a single downlink carrying the most recent state. It is not sent at all if it
+ * is the same as both the state most recently sent and the one most recently reported by the device
+ * in an uplink, as far as they are known. In particular, a report that differs from the sent state
+ * may come from before a queued downlink is delivered, so then the downlink is sent again.
+ * Downlinks are published on a separate thread, so that event loops serving the LwM2M writes do not
+ * wait for the MQTT client.
+ *
+ * <p>State of each device is keyed by its topic prefix. It is kept while a downlink is pending even
+ * if the client of the device is closed, so that a client created again for the same device
+ * continues from it.
+ */
+public class MqttMessageSender implements AutoCloseable {
 
-    private static String ledCode[] = {"AA==", "AQ=="};
+    private static final Logger LOGGER = Logger.getLogger(MqttMessageSender.class.getName());
 
-    public static void sendLedDownlink(boolean state) throws MqttException {
+    /** TTN operation used for scheduled downlinks. */
+    public enum Policy {
+        /** Append the downlink to the queue of the device. */
+        PUSH("/down/push"),
+        /** Replace all downlinks queued for the device, which suits state updates. */
+        REPLACE("/down/replace");
 
-        JsonObject json = new JsonObject();
-        json.addProperty("f_port", 2);
-        json.addProperty("frm_payload", ledCode[state ? 1 : 0]);
-        json.addProperty("priority", "NORMAL");
+        private final String topicSuffix;
 
-        JsonArray arr = new JsonArray();
-        arr.add(json);
+        Policy(String topicSuffix) {
+            this.topicSuffix = topicSuffix;
+        }
+    }
+
+    private static final int LED_F_PORT = 2;
+    private static final byte[][] LED_PAYLOADS = {
+            encodeDownlink(LED_F_PORT, "AA=="),
+            encodeDownlink(LED_F_PORT, "AQ==")
+    };
+
+    // {"downlinks":[{"f_port":<port>,"frm_payload":"<base64>","priority":"NORMAL"}]}
+    private static byte[] encodeDownlink(int fPort, String base64Payload) {
+        return ("{\"downlinks\":[{\"f_port\":" + fPort + ",\"frm_payload\":\"" + base64Payload
+                + "\",\"priority\":\"NORMAL\"}]}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Downlink state of a single device; guarded by its own monitor. */
+    private static final class DeviceDownlinks {
+        final String topicBase;
+        boolean flushScheduled;
+        boolean pendingLedState;
+        // Last state sent, and last state reported by the device; null if not known.
+        Boolean sentLedState;
+        Boolean reportedLedState;
+        // Set if the client of the device was closed while a flush was scheduled; the entry is
+        // then removed after the flush.
+        boolean forgotten;
+
+        DeviceDownlinks(String topicBase) {
+            this.topicBase = topicBase;
+        }
+    }
+
+    private final Policy policy;
+    private final long windowNanos;
+    private final Map<String, DeviceDownlinks> devices = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    private volatile MqttClient client;
 
-        JsonObject finalJson = new JsonObject();
-        finalJson.add("downlinks", arr);
+    /**
+     * @param policy TTN operation used for downlinks.
+     * @param window Time during which writes to a device are collapsed into one downlink.
+     */
+    public MqttMessageSender(Policy policy, Duration window) {
+        this.policy = policy;
+        this.windowNanos = window.toNanos();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mqtt-downlink");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-        System.out.println("PAYLOAD: " + finalJson.toString());
+    public MqttMessageSender(DemoArgs args) {
+        this(args.downlinkPolicy, args.downlinkWindow);
+    }
 
-        byte[] payload = finalJson.toString().getBytes();
+    /** Sets the client used to publish downlinks; until then, downlinks are discarded. */
+    public void setClient(MqttClient client) {
+        this.client = client;
+    }
 
-        MqttMessage msg = new MqttMessage(payload);
+    /**
+     * Schedules setting the LED of a device. May be called from any thread.
+     *
+     * @param topicBase MQTT topic prefix of the end device.
+     * @param state Requested state of the LED.
+     */
+    public void scheduleLedDownlink(String topicBase, boolean state) {
+        // Done atomically with respect to forget(), so that the flush is never scheduled for an
+        // entry that has already been removed.
+        devices.compute(topicBase, (key, existing) -> {
+            DeviceDownlinks device = existing != null ? existing : new DeviceDownlinks(key);
+            synchronized (device) {
+                device.forgotten = false;
+                device.pendingLedState = state;
+                if (!device.flushScheduled) {
+                    device.flushScheduled = true;
+                    executor.schedule(() -> flush(device), windowNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            return device;
+        });
+    }
+
+    /**
+     * Records the LED state reported by a device in an uplink. May be called from any thread.
+     *
+     * @param topicBase MQTT topic prefix of the end device.
+     * @param state Reported state of the LED.
+     */
+    public void ledStateReported(String topicBase, boolean state) {
+        devices.compute(topicBase, (key, existing) -> {
+            DeviceDownlinks device = existing != null ? existing : new DeviceDownlinks(key);
+            synchronized (device) {
+                device.reportedLedState = state;
+            }
+            return device;
+        });
+    }
+
+    /**
+     * Discards the downlink state of a device, e.g. when its client is closed. If a downlink is
+     * scheduled, it is still sent, and the state is discarded afterwards, unless the device is used
+     * again in the meantime.
+     */
+    public void forget(String topicBase) {
+        devices.computeIfPresent(topicBase, (key, device) -> {
+            synchronized (device) {
+                if (device.flushScheduled) {
+                    device.forgotten = true;
+                    return device;
+                }
+                return null;
+            }
+        });
+    }
+
+    private void flush(DeviceDownlinks device) {
+        try {
+            sendPending(device);
+        } finally {
+            devices.computeIfPresent(device.topicBase, (key, existing) -> {
+                if (existing != device) {
+                    return existing;
+                }
+                synchronized (device) {
+                    return device.forgotten && !device.flushScheduled ? null : device;
+                }
+            });
+        }
+    }
+
+    private void sendPending(DeviceDownlinks device) {
+        boolean state;
+        synchronized (device) {
+            device.flushScheduled = false;
+            state = device.pendingLedState;
+            if (isKnownLedState(device, state)) {
+                return;
+            }
+        }
+
+        MqttClient currentClient = client;
+        if (currentClient == null) {
+            LOGGER.log(Level.WARNING,
+                    "MQTT client not connected, dropping downlink to " + device.topicBase);
+            return;
+        }
+        MqttMessage msg = new MqttMessage(LED_PAYLOADS[state ? 1 : 0]);
         msg.setQos(0);
-        msg.setRetained(true);
+        msg.setRetained(false);
+        try {
+            currentClient.publish(device.topicBase + policy.topicSuffix, msg);
+        } catch (MqttException e) {
+            LOGGER.log(Level.WARNING, "failed to send downlink to " + device.topicBase, e);
+            return;
+        }
+        synchronized (device) {
+            device.sentLedState = state;
+        }
+        LOGGER.log(Level.FINE, "LED of " + device.topicBase + " set to " + state);
+    }
+
+    /** @return Whether the LED is known to be, or is already being set, in the given state. */
+    private static boolean isKnownLedState(DeviceDownlinks device, boolean state) {
+        if (device.sentLedState == null && device.reportedLedState == null) {
+            return false;
+        }
+        return (device.sentLedState == null || device.sentLedState == state)
+                && (device.reportedLedState == null || device.reportedLedState == state);
+    }
 
-        client.publish(topic, msg);
+    @Override
+    public void close() {
+        executor.shutdownNow();
     }
 }
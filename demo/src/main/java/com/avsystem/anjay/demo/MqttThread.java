@@ -16,6 +16,13 @@ import java.nio.file.Path;
 public class MqttThread extends Thread {
 
     private final String topic = "#";
+    private final UplinkIngestQueue ingestQueue;
+    private final MqttMessageSender downlinkSender;
+
+    public MqttThread(UplinkIngestQueue ingestQueue, MqttMessageSender downlinkSender) {
+        this.ingestQueue = ingestQueue;
+        this.downlinkSender = downlinkSender;
+    }
 
     public void run() {
 
@@ -49,8 +56,8 @@ public class MqttThread extends Thread {
             options.setPassword("NNSXS.4YLFQ2Q3QMZHKFTZMU5AUEUEVWJPZPAB3SIDEGQ.XSZMTQDKXAMDV2FTXCPSLNAVFLLH442BTDYLEKPXF4SKPCMQ2ZUA".toCharArray());
             client.connect(options);
             System.out.println("MQTT Client Start");
-            MqttMessageSender.client = client;
-            MqttMessageListener messageListener = new MqttMessageListener();
+            downlinkSender.setClient(client);
+            MqttMessageListener messageListener = new MqttMessageListener(ingestQueue);
             client.subscribe(topic, messageListener);
             System.out.println("MQTT Client Listening");
         } catch (MqttException e) {
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import com.avsystem.anjay.Anjay;
+import com.avsystem.anjay.Anjay3dIpsoSensor;
+import com.avsystem.anjay.AnjayBasicIpsoSensor;
+import com.avsystem.anjay.AnjayEventLoopGroup;
+import com.avsystem.anjay.AnjaySecurityObject;
+import com.avsystem.anjay.AnjayServerObject;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LwM2M client representing a single LoRaWAN end device. Its Endpoint Client Name is the DevEUI
+ * of the device, and its Objects reflect the values received in uplinks of that device. Sensor
+ * Objects listed in {@link IpsoObjectTable} are installed, and their Instances created, when the
+ * first value for a given Instance ID (i.e. Cayenne LPP channel) arrives.
+ */
+public final class ProxiedDevice implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ProxiedDevice.class.getName());
+
+    // Proxied clients exchange tiny messages only, so the buffers are kept much smaller than the
+    // ones used by DemoClient to bound the memory used by thousands of them.
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final int DIGITAL_OUTPUT_OID = 3201;
+    // Instance IDs correspond to LPP channels, which are single bytes.
+    private static final int MAX_IID = 255;
+
+    /**
+     * Sensor Object of a given OID. The object is installed on the event loop thread along with
+     * its first Instance, and IIDs of existing Instances are marked in a bitmap, so that values
+     * may be published from any thread without locking.
+     *
+     * <p>Values that need an Instance to be created are published by tasks run on the event loop.
+     * Other values are published directly only once all such tasks have run, as otherwise a task
+     * could overwrite a newer value with an older one.
+     */
+    private final class SensorObject {
+        private final IpsoObjectTable.Definition definition;
+        private final AtomicLongArray instances = new AtomicLongArray(MAX_IID / 64 + 1);
+        // Number of tasks submitted with executeInOrder() that have not completed yet.
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+        // Set on the event loop thread before the first Instance is marked in the bitmap.
+        private volatile AnjayBasicIpsoSensor basicSensor;
+        private volatile Anjay3dIpsoSensor threeAxisSensor;
+
+        SensorObject(IpsoObjectTable.Definition definition) {
+            this.definition = definition;
+        }
+
+        boolean hasInstance(int iid) {
+            return (instances.get(iid >>> 6) & (1L << iid)) != 0;
+        }
+
+        boolean canPublishDirectly(int iid) {
+            return pendingTasks.get() == 0 && hasInstance(iid);
+        }
+
+        /** Runs a task on the event loop, after all tasks previously submitted this way. */
+        void executeInOrder(Runnable task) {
+            pendingTasks.incrementAndGet();
+            executeOnLoop(
+                    () -> {
+                        try {
+                            task.run();
+                        } finally {
+                            pendingTasks.decrementAndGet();
+                        }
+                    });
+        }
+
+        private void markInstance(int iid) {
+            instances.accumulateAndGet(iid >>> 6, 1L << iid, (bits, bit) -> bits | bit);
+        }
+
+        /** Called on the event loop thread. */
+        void addBasicInstance(int iid, double initialValue) {
+            if (hasInstance(iid)) {
+                return;
+            }
+            if (basicSensor == null) {
+                basicSensor =
+                        AnjayBasicIpsoSensor.install(
+                                anjay, definition.oid, ProxiedDevice.this::executeOnLoop);
+            }
+            basicSensor.instanceAdd(
+                    iid,
+                    definition.unit,
+                    definition.minRangeValue,
+                    definition.maxRangeValue,
+                    initialValue);
+            markInstance(iid);
+        }
+
+        /** Called on the event loop thread. */
+        void addThreeAxisInstance(int iid, Anjay3dIpsoSensor.Coordinates initialValues) {
+            if (hasInstance(iid)) {
+                return;
+            }
+            if (threeAxisSensor == null) {
+                threeAxisSensor =
+                        Anjay3dIpsoSensor.install(
+                                anjay, definition.oid, ProxiedDevice.this::executeOnLoop);
+            }
+            threeAxisSensor.instanceAdd(
+                    iid,
+                    definition.unit,
+                    definition.minRangeValue,
+                    definition.maxRangeValue,
+                    initialValues);
+            markInstance(iid);
+        }
+    }
+
+    private final String devEui;
+    private final String topicBase;
+
+    private final Led led = new Led();
+
+    private final Anjay anjay;
+    private final AnjayEventLoopGroup eventLoopGroup;
+    private final MqttMessageSender downlinkSender;
+    private final DigitalOutput output;
+    // Indexed by OID - IpsoObjectTable.FIRST_OID; null for objects that are not supported.
+    private final SensorObject[] sensorObjects = new SensorObject[IpsoObjectTable.SIZE];
+
+    private volatile long lastActivityNanos = System.nanoTime();
+    private volatile boolean closed = false;
+
+    /**
+     * @param args Arguments of the demo, used to configure the LwM2M Server connection.
+     * @param devEui DevEUI of the end device, used as the Endpoint Client Name.
+     * @param topicBase MQTT topic prefix of the end device, i.e. <code>
+     *     v3/{application id}@{tenant id}/devices/{device id}</code>.
+     * @param eventLoopGroup Event loops, one of which will serve the client.
+     * @param downlinkSender Sender of downlinks resulting from LwM2M writes.
+     */
+    public ProxiedDevice(
+            DemoArgs args,
+            String devEui,
+            String topicBase,
+            AnjayEventLoopGroup eventLoopGroup,
+            MqttMessageSender downlinkSender)
+            throws Exception {
+        this.devEui = devEui;
+        this.topicBase = topicBase;
+        this.eventLoopGroup = eventLoopGroup;
+        this.downlinkSender = downlinkSender;
+
+        Anjay.Configuration config = new Anjay.Configuration();
+        config.endpointName = devEui;
+        config.inBufferSize = BUFFER_SIZE;
+        config.outBufferSize = BUFFER_SIZE;
+        config.msgCacheSize = args.cacheSize;
+        config.udpTxParams =
+                Optional.of(
+                        new Anjay.CoapUdpTxParams(
+                                args.ackTimeout,
+                                args.ackRandomFactor,
+                                args.maxRetransmit,
+                                args.nstart));
+        this.anjay = new Anjay(config);
+        for (int i = 0; i < sensorObjects.length; ++i) {
+            IpsoObjectTable.Definition definition =
+                    IpsoObjectTable.get(IpsoObjectTable.FIRST_OID + i);
+            if (definition != null) {
+                sensorObjects[i] = new SensorObject(definition);
+            }
+        }
+        try {
+            configureServer(args);
+
+            this.output = DigitalOutput.install(anjay, topicBase, downlinkSender);
+            this.output.instanceAdd(0, "LED Control", led::getState);
+        } catch (Exception e) {
+            this.anjay.close();
+            throw e;
+        }
+        // From now on, the client is accessed only from the thread of its event loop.
+        this.eventLoopGroup.add(anjay);
+    }
+
+    private void executeOnLoop(Runnable task) {
+        try {
+            eventLoopGroup.execute(anjay, client -> task.run());
+        } catch (IllegalArgumentException e) {
+            // The client has been closed concurrently, which uplinkProcessed() reports to the
+            // registry, so that the uplink is handled again by a new client.
+        } catch (IllegalStateException e) {
+            // The event loop serving the client has failed; closing the client makes the registry
+            // create a new one, served by another loop.
+            LOGGER.log(Level.WARNING, "event loop of device " + devEui + " has stopped", e);
+            close();
+        }
+    }
+
+    private void configureServer(DemoArgs args) throws Exception {
+        AnjaySecurityObject securityObject = AnjaySecurityObject.install(anjay);
+        AnjayServerObject serverObject = AnjayServerObject.install(anjay);
+
+        AnjaySecurityObject.Instance securityInstance = new AnjaySecurityObject.Instance();
+        securityInstance.ssid = 1;
+        securityInstance.serverUri = Optional.of(args.serverUri);
+        securityInstance.securityMode = args.securityMode;
+        if (args.securityMode == AnjaySecurityObject.SecurityMode.PSK) {
+            securityInstance.publicCertOrPskIdentity = Optional.ofNullable(args.identityOrCert);
+            securityInstance.privateCertOrPskKey = Optional.ofNullable(args.pskOrPrivKey);
+        } else if (args.securityMode != AnjaySecurityObject.SecurityMode.NOSEC) {
+            throw new RuntimeException(
+                    "Unsupported security mode for proxied devices " + args.securityMode);
+        }
+        securityObject.addInstance(securityInstance);
+
+        AnjayServerObject.Instance serverInstance = new AnjayServerObject.Instance();
+        serverInstance.ssid = 1;
+        serverInstance.lifetime = args.lifetime;
+        serverInstance.binding = "U";
+        serverObject.addInstance(serverInstance);
+    }
+
+    public String getDevEui() {
+        return devEui;
+    }
+
+    public String getTopicBase() {
+        return topicBase;
+    }
+
+    /** @return Value of {@link System#nanoTime()} at the time of the most recent uplink. */
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private SensorObject sensorObject(int oid, int iid, IpsoObjectTable.Kind kind) {
+        int index = oid - IpsoObjectTable.FIRST_OID;
+        if (index < 0 || index >= sensorObjects.length || iid < 0 || iid > MAX_IID) {
+            return null;
+        }
+        SensorObject sensor = sensorObjects[index];
+        return sensor != null && sensor.definition.kind == kind ? sensor : null;
+    }
+
+    /**
+     * Publishes a single-value measurement. May be called from any thread.
+     *
+     * @param oid IPSO Object ID of the measured quantity.
+     * @param iid Instance ID, created if it does not exist yet.
+     * @param value Measured value.
+     * @param timestamp Time of the measurement.
+     * @return False if the Object or the Instance ID is not supported by the proxy.
+     */
+    public boolean publishValue(int oid, int iid, double value, Instant timestamp) {
+        if (oid == DIGITAL_OUTPUT_OID) {
+            boolean state = value != 0.0;
+            led.setState(state);
+            downlinkSender.ledStateReported(topicBase, state);
+            // Notifies observers of the Digital Output State, with the most recent state by then.
+            executeOnLoop(() -> output.update(0, led.getState()));
+            return true;
+        }
+        SensorObject sensor = sensorObject(oid, iid, IpsoObjectTable.Kind.BASIC);
+        if (sensor == null) {
+            return false;
+        }
+        if (sensor.canPublishDirectly(iid)) {
+            sensor.basicSensor.publish(iid, value, timestamp);
+        } else {
+            sensor.executeInOrder(
+                    () -> {
+                        sensor.addBasicInstance(iid, value);
+                        sensor.basicSensor.publish(iid, value, timestamp);
+                    });
+        }
+        return true;
+    }
+
+    /**
+     * Publishes a three-axis measurement. May be called from any thread.
+     *
+     * @param oid IPSO Object ID of the measured quantity.
+     * @param iid Instance ID, created if it does not exist yet.
+     * @param values Measured values.
+     * @param timestamp Time of the measurement.
+     * @return False if the Object or the Instance ID is not supported by the proxy.
+     */
+    public boolean publishVector(
+            int oid, int iid, Anjay3dIpsoSensor.Coordinates values, Instant timestamp) {
+        SensorObject sensor = sensorObject(oid, iid, IpsoObjectTable.Kind.THREE_AXIS);
+        if (sensor == null) {
+            return false;
+        }
+        if (sensor.canPublishDirectly(iid)) {
+            sensor.threeAxisSensor.publish(iid, values, timestamp);
+        } else {
+            sensor.executeInOrder(
+                    () -> {
+                        sensor.addThreeAxisInstance(iid, values);
+                        sensor.threeAxisSensor.publish(iid, values, timestamp);
+                    });
+        }
+        return true;
+    }
+
+    public Led getLed() {
+        return led;
+    }
+
+    /**
+     * Marks the device as active. Called after each uplink, whose values have already been
+     * published to the sensor objects.
+     *
+     * @return False if the device has already been closed.
+     */
+    public boolean uplinkProcessed() {
+        if (closed) {
+            return false;
+        }
+        lastActivityNanos = System.nanoTime();
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        eventLoopGroup.remove(anjay).join();
+        anjay.close();
+        downlinkSender.forget(topicBase);
+    }
+}
@@ -1,10 +0,0 @@
-package com.avsystem.anjay.demo;
-
-public class RegisteredObjects {
-
-    public static Thermometer thermometer = new Thermometer();
-    public static Accelerometer accelerometer = new Accelerometer();
-
-    public static Led led = new Led();
-
-}
@@ -46,13 +46,18 @@ public class Test {
             return;
         }
 
-        Thread thread = new Thread(new DemoClient(args));
-        thread.start();
+        try (MqttMessageSender downlinkSender = new MqttMessageSender(args);
+                DeviceRegistry registry = new DeviceRegistry(args, downlinkSender);
+                UplinkIngestQueue ingestQueue =
+                        new UplinkIngestQueue(args, () -> new UplinkProcessor(registry))) {
+            Thread thread = new Thread(new DemoClient(args));
+            thread.start();
 
-        Thread mqttThread = new MqttThread();
-        mqttThread.start();
+            Thread mqttThread = new MqttThread(ingestQueue, downlinkSender);
+            mqttThread.start();
 
-        thread.join();
-        mqttThread.join();
+            thread.join();
+            mqttThread.join();
+        }
     }
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the fields used by the proxy from TTN v3 uplink messages, reading the UTF-8 payload with
+ * a streaming {@link JsonReader} instead of building a JSON tree. All other fields are skipped
+ * without being decoded.
+ *
+ * <p>The decoder reuses its buffers and the returned {@link Uplink} object, so it is not
+ * thread-safe; each {@link UplinkProcessor}, and thus each ingest worker thread, owns one.
+ */
+final class UplinkDecoder {
+    /** Entry of the decoded payload: either a single number or a vector of x, y and z. */
+    static final class Field {
+        String name;
+        boolean isVector;
+        double value;
+        double x;
+        double y;
+        double z;
+    }
+
+    /** Data extracted from an uplink message. Valid until the next call to decode(). */
+    static final class Uplink {
+        String devEui;
+        String deviceId;
+        String receivedAt;
+        String frmPayload;
+        boolean hasDecodedPayload;
+
+        private final List<Field> fields = new ArrayList<>();
+        private int fieldCount;
+
+        private void clear() {
+            devEui = null;
+            deviceId = null;
+            receivedAt = null;
+            frmPayload = null;
+            hasDecodedPayload = false;
+            fieldCount = 0;
+        }
+
+        private Field addField(String name) {
+            if (fieldCount == fields.size()) {
+                fields.add(new Field());
+            }
+            Field field = fields.get(fieldCount++);
+            field.name = name;
+            field.isVector = false;
+            field.value = 0.0;
+            field.x = 0.0;
+            field.y = 0.0;
+            field.z = 0.0;
+            return field;
+        }
+
+        /** @return Number of numeric fields of <code>decoded_payload</code>. */
+        int getFieldCount() {
+            return fieldCount;
+        }
+
+        Field getField(int index) {
+            if (index >= fieldCount) {
+                throw new IndexOutOfBoundsException();
+            }
+            return fields.get(index);
+        }
+
+        /** @return DevEUI of the device, or its Device ID if the DevEUI is not known. */
+        String getDeviceKey() {
+            return devEui != null ? devEui : deviceId;
+        }
+    }
+
+    /** Reader of characters decoded from a byte array, which may be reset with a new array. */
+    private static final class Utf8Reader extends Reader {
+        private final CharsetDecoder decoder =
+                StandardCharsets.UTF_8
+                        .newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private ByteBuffer input = ByteBuffer.allocate(0);
+        private boolean flushed;
+
+        void reset(byte[] bytes) {
+            input = ByteBuffer.wrap(bytes);
+            decoder.reset();
+            flushed = false;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (flushed) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            CharBuffer output = CharBuffer.wrap(buffer, offset, length);
+            CoderResult result = decoder.decode(input, output, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!input.hasRemaining()) {
+                result = decoder.flush(output);
+                if (result.isError()) {
+                    throw new CharacterCodingException();
+                }
+                flushed = !result.isOverflow();
+            }
+            int count = output.position() - offset;
+            return count == 0 && flushed ? -1 : count;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private final Utf8Reader source = new Utf8Reader();
+    private final Uplink uplink = new Uplink();
+
+    /**
+     * Decodes an uplink message.
+     *
+     * @param payload UTF-8 encoded JSON of the message.
+     * @return Extracted data, valid until the next call.
+     * @throws IOException if the message is not valid JSON.
+     */
+    Uplink decode(byte[] payload) throws IOException {
+        uplink.clear();
+        source.reset(payload);
+        JsonReader reader = new JsonReader(source);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "end_device_ids":
+                    readEndDeviceIds(reader);
+                    break;
+                case "received_at":
+                    uplink.receivedAt = nextStringOrNull(reader);
+                    break;
+                case "uplink_message":
+                    readUplinkMessage(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return uplink;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static boolean skipIfNotObject(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return true;
+        }
+        return false;
+    }
+
+    private void readEndDeviceIds(JsonReader reader) throws IOException {
+        if (skipIfNotObject(reader)) {
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "device_id":
+                    uplink.deviceId = nextStringOrNull(reader);
+                    break;
+                case "dev_eui":
+                    uplink.devEui = nextStringOrNull(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readUplinkMessage(JsonReader reader) throws IOException {
+        if (skipIfNotObject(reader)) {
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "frm_payload":
+                    uplink.frmPayload = nextStringOrNull(reader);
+                    break;
+                case "decoded_payload":
+                    readDecodedPayload(reader);
+                    break;
+                case "received_at":
+                    // the top-level timestamp, if present, takes precedence
+                    String receivedAt = nextStringOrNull(reader);
+                    if (uplink.receivedAt == null) {
+                        uplink.receivedAt = receivedAt;
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readDecodedPayload(JsonReader reader) throws IOException {
+        if (skipIfNotObject(reader)) {
+            return;
+        }
+        uplink.hasDecodedPayload = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NUMBER) {
+                uplink.addField(name).value = reader.nextDouble();
+            } else if (token == JsonToken.BEGIN_OBJECT) {
+                readVector(reader, uplink.addField(name));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readVector(JsonReader reader, Field field) throws IOException {
+        field.isVector = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.NUMBER) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "x":
+                    field.x = reader.nextDouble();
+                    break;
+                case "y":
+                    field.y = reader.nextDouble();
+                    break;
+                case "z":
+                    field.z = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of uplink messages between the MQTT callback thread and a pool of workers that
+ * parse them and publish their values to the {@link ProxiedDevice} clients.
+ *
+ * <p>Pending messages are kept in per-device mailboxes. A mailbox is drained by at most one worker
+ * at a time, so that uplinks of a device are handled in order, and a worker handles up to {@link
+ * #MAX_BATCH} of them back-to-back.
+ *
+ * <p>When the queue is full, the configured {@link Policy} decides which message is discarded,
+ * whether the producer waits, or whether the message is merged into the values already pending for
+ * the device.
+ */
+final class UplinkIngestQueue implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(UplinkIngestQueue.class.getName());
+
+    private static final int MAX_BATCH = 32;
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Behavior of {@link #offer(String, byte[])} when there is no room for a message. */
+    enum Policy {
+        /** Wait until workers make room. Delays acknowledging further MQTT messages. */
+        BLOCK,
+        /**
+         * Discard the oldest pending uplink of the same device. Each device may have at most a
+         * configured number of pending uplinks.
+         */
+        DROP_OLDEST,
+        /**
+         * Decode the uplink on the producer thread and merge its values into the latest value of
+         * each Instance pending for the device. Further uplinks of the device are merged as well
+         * until the workers catch up, so that values are handled in order. Nothing is discarded
+         * but intermediate values of the same Instance.
+         */
+        COALESCE
+    }
+
+    /** Handles uplinks. Each thread, including the producers, uses its own handler. */
+    interface Handler {
+        /** Called on worker threads to handle an uplink. */
+        void handle(String topicBase, byte[] payload) throws Exception;
+
+        /**
+         * Called on producer threads to decode an uplink into values to be coalesced.
+         *
+         * @return False if the uplink carries no values.
+         */
+        boolean decodeLatest(String topicBase, byte[] payload, LatestValues values)
+                throws Exception;
+
+        /** Called on worker threads to handle values coalesced from one or more uplinks. */
+        void handleLatest(String topicBase, LatestValues values) throws Exception;
+    }
+
+    private static final class Mailbox {
+        final String topicBase;
+        final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        // Values coalesced from uplinks newer than all of the pending ones; null if there are none.
+        LatestValues latest;
+        boolean scheduled;
+
+        Mailbox(String topicBase) {
+            this.topicBase = topicBase;
+        }
+    }
+
+    private final int capacity;
+    private final int deviceBacklog;
+    private final Policy policy;
+    private final ExecutorService workers;
+    private final ThreadLocal<Handler> handlers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // Mailboxes with pending uplinks or being drained; guarded by lock, like the fields below.
+    private final Map<String, Mailbox> mailboxes = new HashMap<>();
+    private int size;
+    private boolean closed;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong reportedDroppedCount = new AtomicLong();
+    private final AtomicLong lastDropReportNanos =
+            new AtomicLong(System.nanoTime() - DROP_REPORT_INTERVAL_NANOS);
+
+    /**
+     * @param capacity Maximum number of pending uplinks of all devices.
+     * @param deviceBacklog Maximum number of pending uplinks of a single device, used with {@link
+     *     Policy#DROP_OLDEST} and {@link Policy#COALESCE}.
+     * @param policy Behavior when there is no room for an uplink.
+     * @param threads Number of worker threads.
+     * @param handlerFactory Creates the handler of each worker thread.
+     */
+    UplinkIngestQueue(
+            int capacity,
+            int deviceBacklog,
+            Policy policy,
+            int threads,
+            Supplier<Handler> handlerFactory) {
+        if (capacity <= 0 || deviceBacklog <= 0 || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity, device backlog and number of threads must be positive");
+        }
+        this.capacity = capacity;
+        this.deviceBacklog = deviceBacklog;
+        this.policy = policy;
+        this.handlers = ThreadLocal.withInitial(handlerFactory);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers =
+                Executors.newFixedThreadPool(
+                        threads,
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            "uplink-ingest-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    UplinkIngestQueue(DemoArgs args, Supplier<Handler> handlerFactory) {
+        this(
+                args.ingestQueueCapacity,
+                args.ingestDeviceBacklog,
+                args.ingestPolicy,
+                args.ingestThreads,
+                handlerFactory);
+    }
+
+    /**
+     * Enqueues an uplink. May block if the policy is {@link Policy#BLOCK}, or decode the uplink on
+     * the calling thread if it is {@link Policy#COALESCE}.
+     *
+     * @param topicBase MQTT topic prefix of the end device, which identifies its mailbox.
+     * @param payload Payload of the MQTT message, not modified afterwards by the caller.
+     * @return False if the uplink has been discarded.
+     * @throws InterruptedException if interrupted while waiting for room.
+     */
+    boolean offer(String topicBase, byte[] payload) throws InterruptedException {
+        boolean dropped = false;
+        boolean coalesce = false;
+        lock.lock();
+        try {
+            if (policy == Policy.BLOCK) {
+                while (size >= capacity && !closed) {
+                    notFull.await();
+                }
+            }
+            if (closed) {
+                return false;
+            }
+            Mailbox mailbox = mailboxes.get(topicBase);
+            int devicePending = mailbox != null ? mailbox.pending.size() : 0;
+            if (policy == Policy.COALESCE) {
+                coalesce =
+                        size >= capacity
+                                || devicePending >= deviceBacklog
+                                || (mailbox != null && mailbox.latest != null);
+            } else if (size >= capacity
+                    || (policy == Policy.DROP_OLDEST && devicePending >= deviceBacklog)) {
+                dropped = true;
+                droppedCount.incrementAndGet();
+                if (devicePending == 0) {
+                    return false;
+                }
+                mailbox.pending.pollFirst();
+                --size;
+            }
+            if (!coalesce) {
+                enqueue(mailbox, topicBase, payload);
+            }
+        } finally {
+            lock.unlock();
+            if (dropped) {
+                reportDrops();
+            }
+        }
+        // Decoded outside of the lock, so that the workers are not held up.
+        return !coalesce || coalesce(topicBase, payload);
+    }
+
+    private void enqueue(Mailbox mailbox, String topicBase, byte[] payload) {
+        if (mailbox == null) {
+            mailbox = new Mailbox(topicBase);
+            mailboxes.put(topicBase, mailbox);
+        }
+        mailbox.pending.addLast(payload);
+        ++size;
+        if (!mailbox.scheduled) {
+            mailbox.scheduled = true;
+            schedule(mailbox);
+        }
+    }
+
+    private boolean coalesce(String topicBase, byte[] payload) {
+        LatestValues values = new LatestValues();
+        try {
+            if (!handlers.get().decodeLatest(topicBase, payload, values)) {
+                return false;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "failed to decode uplink of " + topicBase, e);
+            return false;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            Mailbox mailbox = mailboxes.get(topicBase);
+            if (mailbox == null) {
+                mailbox = new Mailbox(topicBase);
+                mailboxes.put(topicBase, mailbox);
+            }
+            if (mailbox.latest == null) {
+                mailbox.latest = values;
+            } else {
+                mailbox.latest.merge(values);
+                coalescedCount.incrementAndGet();
+            }
+            if (!mailbox.scheduled) {
+                mailbox.scheduled = true;
+                schedule(mailbox);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Logs the number of dropped uplinks, at most once per DROP_REPORT_INTERVAL_NANOS. */
+    private void reportDrops() {
+        long now = System.nanoTime();
+        long last = lastDropReportNanos.get();
+        if (now - last < DROP_REPORT_INTERVAL_NANOS
+                || !lastDropReportNanos.compareAndSet(last, now)) {
+            return;
+        }
+        long total = droppedCount.get();
+        long count = total - reportedDroppedCount.getAndSet(total);
+        LOGGER.log(Level.WARNING, "ingest queue full, dropped {0} uplinks", count);
+    }
+
+    /** @return Number of uplinks discarded because of the queue limits. */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /** @return Number of uplinks merged into values already pending for the same device. */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private void schedule(Mailbox mailbox) {
+        workers.execute(() -> drain(mailbox));
+    }
+
+    private void drain(Mailbox mailbox) {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        LatestValues latest = null;
+        lock.lock();
+        try {
+            while (batch.size() < MAX_BATCH && !mailbox.pending.isEmpty()) {
+                batch.add(mailbox.pending.pollFirst());
+            }
+            size -= batch.size();
+            notFull.signalAll();
+            // Coalesced values are newer than the pending uplinks, so they are handled last.
+            if (mailbox.pending.isEmpty()) {
+                latest = mailbox.latest;
+                mailbox.latest = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Handler handler = handlers.get();
+        for (byte[] payload : batch) {
+            try {
+                handler.handle(mailbox.topicBase, payload);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "failed to handle uplink of " + mailbox.topicBase, e);
+            }
+        }
+        if (latest != null) {
+            try {
+                handler.handleLatest(mailbox.topicBase, latest);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "failed to handle uplinks of " + mailbox.topicBase, e);
+            }
+        }
+
+        lock.lock();
+        try {
+            if ((mailbox.pending.isEmpty() && mailbox.latest == null) || closed) {
+                mailbox.scheduled = false;
+                mailboxes.remove(mailbox.topicBase);
+            } else {
+                // Let other devices' mailboxes be drained before continuing with this one.
+                schedule(mailbox);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay.demo;
+
+import com.avsystem.anjay.Anjay3dIpsoSensor;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parses TTN uplink messages and publishes their values to the {@link ProxiedDevice} clients. Used
+ * by the workers of {@link UplinkIngestQueue}, and by its producers to coalesce uplinks that do not
+ * fit in the queue; the decoders are reused, so each thread has its own instance.
+ */
+final class UplinkProcessor implements UplinkIngestQueue.Handler, CayenneLppDecoder.Handler {
+    private static final Logger LOGGER = Logger.getLogger(UplinkProcessor.class.getName());
+
+    // IPSO OIDs of decoded_payload fields produced by the TTN Cayenne LPP formatter, i.e.
+    // {name}_{channel}, keyed by {name}; used when frm_payload cannot be decoded.
+    private static final Map<String, Integer> DECODED_FIELD_OIDS = new HashMap<>();
+
+    static {
+        DECODED_FIELD_OIDS.put("digital_in", 3200);
+        DECODED_FIELD_OIDS.put("digital_out", 3201);
+        DECODED_FIELD_OIDS.put("analog_in", 3202);
+        DECODED_FIELD_OIDS.put("analog_out", 3203);
+        DECODED_FIELD_OIDS.put("luminosity", 3301);
+        DECODED_FIELD_OIDS.put("presence", 3302);
+        DECODED_FIELD_OIDS.put("temperature", 3303);
+        DECODED_FIELD_OIDS.put("relative_humidity", 3304);
+        DECODED_FIELD_OIDS.put("accelerometer", 3313);
+        DECODED_FIELD_OIDS.put("barometric_pressure", 3315);
+        DECODED_FIELD_OIDS.put("gyrometer", 3334);
+    }
+
+    private final UplinkDecoder decoder = new UplinkDecoder();
+    private final CayenneLppDecoder lppDecoder = new CayenneLppDecoder();
+    private final DeviceRegistry registry;
+
+    // Uplink being handled, used by the CayenneLppDecoder.Handler methods. Its values are published
+    // to currentDevice, or stored in currentValues if it is being coalesced.
+    private ProxiedDevice currentDevice;
+    private LatestValues currentValues;
+    private Instant currentTimestamp;
+
+    UplinkProcessor(DeviceRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(String topicBase, byte[] payload) throws Exception {
+        UplinkDecoder.Uplink uplink = decodeUplink(topicBase, payload);
+        if (uplink == null) {
+            return;
+        }
+        Instant timestamp = uplinkTimestamp(uplink);
+        registry.withDevice(
+                uplink.getDeviceKey(),
+                topicBase,
+                device -> {
+                    currentDevice = device;
+                    try {
+                        mapPayload(uplink, timestamp);
+                    } finally {
+                        currentDevice = null;
+                    }
+                });
+    }
+
+    @Override
+    public boolean decodeLatest(String topicBase, byte[] payload, LatestValues values)
+            throws Exception {
+        UplinkDecoder.Uplink uplink = decodeUplink(topicBase, payload);
+        if (uplink == null) {
+            return false;
+        }
+        values.setDeviceKey(uplink.getDeviceKey());
+        currentValues = values;
+        try {
+            mapPayload(uplink, uplinkTimestamp(uplink));
+        } finally {
+            currentValues = null;
+        }
+        return true;
+    }
+
+    @Override
+    public void handleLatest(String topicBase, LatestValues values) throws Exception {
+        registry.withDevice(
+                values.getDeviceKey(),
+                topicBase,
+                device -> {
+                    for (LatestValues.Slot slot : values.getSlots()) {
+                        boolean supported =
+                                slot.isVector
+                                        ? device.publishVector(
+                                                slot.oid,
+                                                slot.iid,
+                                                new Anjay3dIpsoSensor.Coordinates(
+                                                        slot.x, slot.y, slot.z),
+                                                slot.timestamp)
+                                        : device.publishValue(
+                                                slot.oid, slot.iid, slot.x, slot.timestamp);
+                        if (!supported) {
+                            logUnsupported(slot.oid, device.getDevEui());
+                        }
+                    }
+                });
+    }
+
+    /** @return Decoded uplink, or null if it carries nothing to publish. */
+    private UplinkDecoder.Uplink decodeUplink(String topicBase, byte[] payload) throws Exception {
+        UplinkDecoder.Uplink uplink = decoder.decode(payload);
+        if (uplink.getDeviceKey() == null) {
+            LOGGER.log(Level.FINE, "uplink without device identifiers on " + topicBase);
+            return null;
+        }
+        if (uplink.frmPayload == null && !uplink.hasDecodedPayload) {
+            LOGGER.log(Level.FINE, "uplink without payload on " + topicBase);
+            return null;
+        }
+        return uplink;
+    }
+
+    private static Instant uplinkTimestamp(UplinkDecoder.Uplink uplink) {
+        return uplink.receivedAt != null ? Instant.parse(uplink.receivedAt) : Instant.now();
+    }
+
+    private void mapPayload(UplinkDecoder.Uplink uplink, Instant timestamp) {
+        currentTimestamp = timestamp;
+        try {
+            if (uplink.frmPayload != null && lppDecoder.decode(uplink.frmPayload, this)) {
+                return;
+            }
+            if (uplink.hasDecodedPayload) {
+                mapDecodedPayload(uplink);
+            } else {
+                LOGGER.log(
+                        Level.FINE,
+                        "frm_payload of " + uplink.getDeviceKey() + " is not Cayenne LPP");
+            }
+        } finally {
+            currentTimestamp = null;
+        }
+    }
+
+    @Override
+    public void onValue(int oid, int channel, double value) {
+        if (currentValues != null) {
+            currentValues.putValue(oid, channel, value, currentTimestamp);
+        } else if (!currentDevice.publishValue(oid, channel, value, currentTimestamp)) {
+            logUnsupported(oid, currentDevice.getDevEui());
+        }
+    }
+
+    @Override
+    public void onVector(int oid, int channel, double x, double y, double z) {
+        if (currentValues != null) {
+            currentValues.putVector(oid, channel, x, y, z, currentTimestamp);
+        } else if (!currentDevice.publishVector(
+                oid, channel, new Anjay3dIpsoSensor.Coordinates(x, y, z), currentTimestamp)) {
+            logUnsupported(oid, currentDevice.getDevEui());
+        }
+    }
+
+    private static void logUnsupported(int oid, String devEui) {
+        LOGGER.log(Level.FINE, "unsupported object " + oid + " from " + devEui);
+    }
+
+    private void mapDecodedPayload(UplinkDecoder.Uplink uplink) {
+        for (int i = 0; i < uplink.getFieldCount(); ++i) {
+            UplinkDecoder.Field field = uplink.getField(i);
+            int separator = field.name.lastIndexOf('_');
+            if (separator < 0) {
+                continue;
+            }
+            Integer oid = DECODED_FIELD_OIDS.get(field.name.substring(0, separator));
+            if (oid == null) {
+                continue;
+            }
+            int channel = decodedFieldChannel(field.name, separator);
+            if (channel < 0) {
+                continue;
+            }
+            if (field.isVector) {
+                onVector(oid, channel, field.x, field.y, field.z);
+            } else {
+                onValue(oid, channel, field.value);
+            }
+        }
+    }
+
+    /** @return Channel from the _N suffix of a field name, or -1 if it is not valid. */
+    private static int decodedFieldChannel(String name, int separator) {
+        try {
+            int channel = Integer.parseInt(name.substring(separator + 1));
+            return channel >= 0 && channel <= 255 ? channel : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -404,6 +404,129 @@ public final class Anjay implements AutoCloseable {
         }
     }
 
+    /**
+     * Set of changed Resources, reported at once using {@link #notifyChangedBatch(NotificationBatch)
+     * notifyChangedBatch()}.
+     *
+     * <p>Every Resource path is stored only once, no matter how many times it has been added. The
+     * batch may be reused after calling {@link #clear()}. This class is not thread-safe.
+     */
+    public static final class NotificationBatch {
+        private static final int MAX_ID = 65535;
+        private static final int INITIAL_CAPACITY = 8;
+        // Batches smaller than this are deduplicated using a linear scan, larger ones using keys.
+        private static final int LINEAR_SCAN_LIMIT = 16;
+
+        int[] oids = new int[INITIAL_CAPACITY];
+        int[] iids = new int[INITIAL_CAPACITY];
+        int[] rids = new int[INITIAL_CAPACITY];
+        int size = 0;
+
+        // Open-addressing hash set of path keys, see key(); 0 marks an empty slot. Its length is a
+        // power of two, and it contains the first hashedCount paths of the batch.
+        private long[] keys = null;
+        private int hashedCount = 0;
+
+        private static long key(int oid, int iid, int rid) {
+            // offset by one, so that no path is represented by 0
+            return (((long) oid << 32) | ((long) iid << 16) | rid) + 1;
+        }
+
+        private static void checkId(String name, int id) {
+            if (id < 0 || id > MAX_ID) {
+                throw new IllegalArgumentException(name + " out of range: " + id);
+            }
+        }
+
+        /**
+         * Adds a changed Resource to the batch, unless it has already been added.
+         *
+         * @param oid Object ID of the changed Resource.
+         * @param iid Object Instance ID of the changed Resource.
+         * @param rid Resource ID of the changed Resource.
+         * @return This object, to allow chaining calls.
+         * @throws IllegalArgumentException If any of <code>oid</code>, <code>iid</code> or <code>
+         *     rid</code> is not representable as a 16-bit unsigned integer.
+         */
+        public NotificationBatch add(int oid, int iid, int rid) {
+            checkId("oid", oid);
+            checkId("iid", iid);
+            checkId("rid", rid);
+            if (this.size < LINEAR_SCAN_LIMIT) {
+                for (int i = 0; i < this.size; ++i) {
+                    if (this.rids[i] == rid && this.iids[i] == iid && this.oids[i] == oid) {
+                        return this;
+                    }
+                }
+            } else {
+                if (this.hashedCount != this.size || 2 * (this.size + 1) > this.keys.length) {
+                    rehash();
+                }
+                if (!insertKey(key(oid, iid, rid))) {
+                    return this;
+                }
+                this.hashedCount++;
+            }
+            if (this.size == this.oids.length) {
+                int capacity = 2 * this.size;
+                this.oids = Arrays.copyOf(this.oids, capacity);
+                this.iids = Arrays.copyOf(this.iids, capacity);
+                this.rids = Arrays.copyOf(this.rids, capacity);
+            }
+            this.oids[this.size] = oid;
+            this.iids[this.size] = iid;
+            this.rids[this.size] = rid;
+            this.size++;
+            return this;
+        }
+
+        /** @return Number of distinct Resources in the batch. */
+        public int size() {
+            return this.size;
+        }
+
+        /** @return True if no Resource has been added to the batch. */
+        public boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        /** Removes all Resources from the batch. */
+        public void clear() {
+            this.size = 0;
+            this.hashedCount = 0;
+        }
+
+        private void rehash() {
+            int capacity = 4 * LINEAR_SCAN_LIMIT;
+            while (capacity < 4 * (this.size + 1)) {
+                capacity *= 2;
+            }
+            if (this.keys == null || this.keys.length < capacity) {
+                this.keys = new long[capacity];
+            } else {
+                Arrays.fill(this.keys, 0L);
+            }
+            for (int i = 0; i < this.size; ++i) {
+                insertKey(key(this.oids[i], this.iids[i], this.rids[i]));
+            }
+            this.hashedCount = this.size;
+        }
+
+        /** @return False if the key is already present. */
+        private boolean insertKey(long key) {
+            int mask = this.keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (this.keys[slot] != 0) {
+                if (this.keys[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = key;
+            return true;
+        }
+    }
+
     /**
      * Creates a new Anjay object.
      *
@@ -489,6 +612,20 @@ public final class Anjay implements AutoCloseable {
         return this.anjay.getSocketEntries();
     }
 
+    /**
+     * Returns a counter that changes whenever the set of sockets returned by {@link #getSockets()}
+     * may have changed.
+     *
+     * <p>This allows event loops to call {@link #getSockets()} and update their registrations only
+     * when needed. Unlike {@link #getSockets()}, this method does not allocate any Java objects.
+     *
+     * @throws IllegalStateException If {@link #close()} has already been called on this object.
+     * @return Generation of the socket set. Equal values mean that the sockets did not change.
+     */
+    public long getSocketsGeneration() {
+        return this.anjay.getSocketsGeneration();
+    }
+
     /**
      * Reads a message from given <code>channel</code> and handles it appropriately.
      *
@@ -520,6 +657,17 @@ public final class Anjay implements AutoCloseable {
         return this.anjay.timeToNext();
     }
 
+    /**
+     * Equivalent of {@link #timeToNext()} that does not allocate any Java objects.
+     *
+     * @return Relative time from now of next scheduled task in nanoseconds, or -1, if no tasks are
+     *     scheduled.
+     * @throws IllegalStateException If {@link #close()} has already been called on this object.
+     */
+    public long timeToNextNanos() {
+        return this.anjay.timeToNextNanos();
+    }
+
     /**
      * Schedules sending an Update message to the server identified by given Short Server ID.
      *
@@ -740,6 +888,47 @@ public final class Anjay implements AutoCloseable {
         this.anjay.notifyChanged(oid, iid, rid);
     }
 
+    /**
+     * Notifies the library that the values of multiple Resources changed. It is equivalent to
+     * calling {@link #notifyChanged notifyChanged()} for each <code>(oids[i], iids[i], rids[i])
+     * </code> triple, but crosses into the native library only once, which makes it considerably
+     * cheaper when many Resources change at the same time.
+     *
+     * @param oids Object IDs of the changed Resources.
+     * @param iids Object Instance IDs of the changed Resources.
+     * @param rids Resource IDs of the changed Resources.
+     * @throws IllegalArgumentException If the arrays differ in length, or if any of the IDs is not
+     *     representable as a 16-bit unsigned integer. In the latter case, no notification is
+     *     scheduled.
+     * @throws IllegalStateException If {@link #close()} has already been called on this object.
+     * @throws AnjayException If the notifications cannot be scheduled for any reason, which may
+     *     include an out-of-memory condition.
+     */
+    public void notifyChangedBatch(int[] oids, int[] iids, int[] rids) {
+        Objects.requireNonNull(oids, "oids MUST NOT be null");
+        Objects.requireNonNull(iids, "iids MUST NOT be null");
+        Objects.requireNonNull(rids, "rids MUST NOT be null");
+        if (oids.length != iids.length || oids.length != rids.length) {
+            throw new IllegalArgumentException("oids, iids and rids MUST have the same length");
+        }
+        this.anjay.notifyChangedBatch(oids, iids, rids, oids.length);
+    }
+
+    /**
+     * Notifies the library that the values of all Resources added to the <code>batch</code> changed.
+     * The batch is not cleared.
+     *
+     * @param batch Set of changed Resources.
+     * @throws IllegalStateException If {@link #close()} has already been called on this object.
+     * @throws AnjayException If the notifications cannot be scheduled for any reason, which may
+     *     include an out-of-memory condition.
+     * @see #notifyChangedBatch(int[], int[], int[])
+     */
+    public void notifyChangedBatch(NotificationBatch batch) {
+        Objects.requireNonNull(batch, "batch MUST NOT be null");
+        this.anjay.notifyChangedBatch(batch.oids, batch.iids, batch.rids, batch.size);
+    }
+
     /**
      * Notifies the library that the set of Instances existing in a given Object changed. It may
      * trigger an LwM2M Notify message, update server connections and perform other tasks, as
@@ -17,39 +17,67 @@
 package com.avsystem.anjay;
 
 import java.security.InvalidParameterException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 public final class Anjay3dIpsoSensor implements AnjayObject {
     public static final class Coordinates {
-        private final Double x;
-        private final Double y;
-        private final Double z;
+        private final double x;
+        private final double y;
+        private final double z;
 
-        public Coordinates(Double x, Double y, Double z) {
+        public Coordinates(double x, double y, double z) {
             this.x = x;
             this.y = y;
             this.z = z;
         }
 
-        public Double getX() {
+        public double getX() {
             return x;
         }
 
-        public Double getY() {
+        public double getY() {
             return y;
         }
 
-        public Double getZ() {
+        public double getZ() {
             return z;
         }
+
+        /** Checks if two sets of coordinates are equal. */
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            } else if (!(other instanceof Coordinates)) {
+                return false;
+            }
+            Coordinates that = (Coordinates) other;
+            return Double.compare(x, that.x) == 0
+                    && Double.compare(y, that.y) == 0
+                    && Double.compare(z, that.z) == 0;
+        }
+
+        /** Calculates hash of the coordinates. */
+        @Override
+        public int hashCode() {
+            final double values[] = {x, y, z};
+            return Arrays.hashCode(values);
+        }
     }
 
     private final class Resource {
+        public static final int TIMESTAMP = 5518;
         public static final int MIN_RANGE_VALUE = 5603;
         public static final int MAX_RANGE_VALUE = 5604;
         public static final int SENSOR_UNITS = 5701;
@@ -64,23 +92,73 @@ public final class Anjay3dIpsoSensor implements AnjayObject {
         private final Optional<Double> minRangeValue;
         private final Optional<Double> maxRangeValue;
         private final String unit;
+        private final SortedSet<ResourceDef> resourceDefs;
+        private final Anjay.NotificationBatch notifications = new Anjay.NotificationBatch();
         private Coordinates currentValues;
+        private Instant timestamp;
+        // Values most recently reported using notifyChanged(), used as the reference point for
+        // deadband evaluation.
+        private double lastNotifiedX;
+        private double lastNotifiedY;
+        private double lastNotifiedZ;
+        private double deadband = 0.0;
 
         private final Supplier<Coordinates> readValues;
-
+        // Set if readValues is an AnjaySensorValue, in which case values with an already seen
+        // sequence number are not processed again.
+        private final AnjaySensorValue<Coordinates> sensorValue;
+        private long lastSequence;
+        // True if values are published using publish() rather than read from the supplier.
+        private final boolean pushFed;
+        // Set while processing of published values is scheduled on loopExecutor.
+        private final AtomicBoolean updatePending = new AtomicBoolean(false);
+
+        @SuppressWarnings("unchecked")
         public Instance(
                 Integer iid,
                 String unit,
                 Optional<Double> minRangeValue,
                 Optional<Double> maxRangeValue,
-                Supplier<Coordinates> readValues) {
+                Supplier<Coordinates> readValues,
+                boolean pushFed) {
             this.iid = iid;
             this.unit = unit;
             this.minRangeValue = minRangeValue;
             this.maxRangeValue = maxRangeValue;
 
+            TreeSet<ResourceDef> resourceDefs = new TreeSet<>();
+            resourceDefs.add(
+                    new ResourceDef(
+                            Resource.MIN_RANGE_VALUE,
+                            ResourceKind.R,
+                            minRangeValue.isPresent()));
+            resourceDefs.add(
+                    new ResourceDef(
+                            Resource.MAX_RANGE_VALUE,
+                            ResourceKind.R,
+                            maxRangeValue.isPresent()));
+            resourceDefs.add(new ResourceDef(Resource.SENSOR_UNITS, ResourceKind.R, true));
+            resourceDefs.add(new ResourceDef(Resource.SENSOR_X_VALUE, ResourceKind.R, true));
+            resourceDefs.add(new ResourceDef(Resource.SENSOR_Y_VALUE, ResourceKind.R, true));
+            resourceDefs.add(new ResourceDef(Resource.SENSOR_Z_VALUE, ResourceKind.R, true));
+            resourceDefs.add(new ResourceDef(Resource.TIMESTAMP, ResourceKind.R, pushFed));
+            this.resourceDefs = Collections.unmodifiableSortedSet(resourceDefs);
+
             this.readValues = readValues;
-            currentValues = readValues.get();
+            this.pushFed = pushFed;
+            if (readValues instanceof AnjaySensorValue) {
+                this.sensorValue = (AnjaySensorValue<Coordinates>) readValues;
+                AnjaySensorValue.Snapshot<Coordinates> snapshot = sensorValue.snapshot();
+                currentValues = snapshot.getValue();
+                lastSequence = snapshot.getSequence();
+                timestamp = snapshot.getTimestamp();
+            } else {
+                this.sensorValue = null;
+                currentValues = readValues.get();
+            }
+            lastNotifiedX = currentValues.getX();
+            lastNotifiedY = currentValues.getY();
+            lastNotifiedZ = currentValues.getZ();
         }
 
         public String getUnit() {
@@ -95,45 +173,86 @@ public final class Anjay3dIpsoSensor implements AnjayObject {
             return maxRangeValue;
         }
 
+        // Step, Greater Than and Less Than are left to the library, which evaluates them against
+        // the value last sent in a Notify message, not known here.
+        private boolean shouldNotify(double oldValue, double newValue) {
+            return Double.compare(oldValue, newValue) != 0
+                    && Math.abs(newValue - oldValue) > deadband;
+        }
+
         private void updateValues() {
-            Coordinates oldValues = currentValues;
-            currentValues = readValues.get();
+            if (sensorValue != null) {
+                AnjaySensorValue.Snapshot<Coordinates> snapshot = sensorValue.snapshot();
+                if (snapshot.getSequence() == lastSequence) {
+                    return;
+                }
+                lastSequence = snapshot.getSequence();
+                currentValues = snapshot.getValue();
+                timestamp = snapshot.getTimestamp();
+                // a repeated measurement has a new timestamp even if the values are the same
+                if (pushFed) {
+                    notifications.add(oid, iid, Resource.TIMESTAMP);
+                }
+            } else {
+                currentValues = readValues.get();
+            }
 
-            if (oldValues.getX() != currentValues.getX()) {
-                anjay.notifyChanged(oid, iid, Resource.SENSOR_X_VALUE);
+            if (shouldNotify(lastNotifiedX, currentValues.getX())) {
+                lastNotifiedX = currentValues.getX();
+                notifications.add(oid, iid, Resource.SENSOR_X_VALUE);
+            }
+            if (shouldNotify(lastNotifiedY, currentValues.getY())) {
+                lastNotifiedY = currentValues.getY();
+                notifications.add(oid, iid, Resource.SENSOR_Y_VALUE);
+            }
+            if (shouldNotify(lastNotifiedZ, currentValues.getZ())) {
+                lastNotifiedZ = currentValues.getZ();
+                notifications.add(oid, iid, Resource.SENSOR_Z_VALUE);
             }
-            if (oldValues.getY() != currentValues.getY()) {
-                anjay.notifyChanged(oid, iid, Resource.SENSOR_Y_VALUE);
+            if (notifications.isEmpty()) {
+                return;
             }
-            if (oldValues.getZ() != currentValues.getZ()) {
-                anjay.notifyChanged(oid, iid, Resource.SENSOR_Z_VALUE);
+            try {
+                anjay.notifyChangedBatch(notifications);
+            } finally {
+                notifications.clear();
             }
         }
 
-        public Double getXValue() {
+        public double getXValue() {
             updateValues();
             return currentValues.getX();
         }
 
-        public Double getYValue() {
+        public double getYValue() {
             updateValues();
             return currentValues.getY();
         }
 
-        public Double getZValue() {
+        public double getZValue() {
             updateValues();
             return currentValues.getZ();
         }
+
+        public Instant getTimestamp() {
+            updateValues();
+            return timestamp;
+        }
     }
 
     private final Anjay anjay;
     private final int oid;
+    // null if installed without one, in which case push-fed instances are not supported
+    private final Executor loopExecutor;
 
     private final Map<Integer, Instance> instances = new TreeMap<>();
+    // Incremented whenever the set of instances changes, as resources present in them may differ.
+    private long resourcesVersion = 0;
 
-    private Anjay3dIpsoSensor(Anjay anjay, int oid) {
+    private Anjay3dIpsoSensor(Anjay anjay, int oid, Executor loopExecutor) {
         this.anjay = anjay;
         this.oid = oid;
+        this.loopExecutor = loopExecutor;
     }
 
     @Override
@@ -148,22 +267,12 @@ public final class Anjay3dIpsoSensor implements AnjayObject {
 
     @Override
     public synchronized SortedSet<ResourceDef> resources(int iid) {
-        TreeSet<ResourceDef> resourceDefs = new TreeSet<>();
-        resourceDefs.add(
-                new ResourceDef(
-                        Resource.MIN_RANGE_VALUE,
-                        ResourceKind.R,
-                        this.instances.get(iid).minRangeValue.isPresent()));
-        resourceDefs.add(
-                new ResourceDef(
-                        Resource.MAX_RANGE_VALUE,
-                        ResourceKind.R,
-                        this.instances.get(iid).maxRangeValue.isPresent()));
-        resourceDefs.add(new ResourceDef(Resource.SENSOR_UNITS, ResourceKind.R, true));
-        resourceDefs.add(new ResourceDef(Resource.SENSOR_X_VALUE, ResourceKind.R, true));
-        resourceDefs.add(new ResourceDef(Resource.SENSOR_Y_VALUE, ResourceKind.R, true));
-        resourceDefs.add(new ResourceDef(Resource.SENSOR_Z_VALUE, ResourceKind.R, true));
-        return resourceDefs;
+        return this.instances.get(iid).resourceDefs;
+    }
+
+    @Override
+    public synchronized long resourcesVersion() {
+        return resourcesVersion;
     }
 
     @Override
@@ -187,20 +296,44 @@ public final class Anjay3dIpsoSensor implements AnjayObject {
             case Resource.SENSOR_Z_VALUE:
                 context.retDouble(this.instances.get(iid).getZValue());
                 break;
+            case Resource.TIMESTAMP:
+                context.retLong(this.instances.get(iid).getTimestamp().getEpochSecond());
+                break;
             default:
                 throw new IllegalArgumentException("Unsupported resource " + rid);
         }
     }
 
     /**
-     * Installs the Three Axis Ipso Sensor object in an Anjay object.
+     * Installs the Three Axis Ipso Sensor object in an Anjay object. Push-fed instances cannot be
+     * added to it, as they require a <code>loopExecutor</code>.
      *
      * @param anjay Anjay object for which the Three Axis Sensor is installed.
      * @param oid OID of the installed sensor.
      * @return {@link Anjay3dIpsoSensor} object.
      */
     public static Anjay3dIpsoSensor install(Anjay anjay, int oid) {
-        Anjay3dIpsoSensor newSensor = new Anjay3dIpsoSensor(anjay, oid);
+        Anjay3dIpsoSensor newSensor = new Anjay3dIpsoSensor(anjay, oid, null);
+        anjay.registerObject(newSensor);
+        return newSensor;
+    }
+
+    /**
+     * Installs the Three Axis Ipso Sensor object in an Anjay object, allowing values of push-fed
+     * instances to be published from any thread.
+     *
+     * @param anjay Anjay object for which the Three Axis Sensor is installed.
+     * @param oid OID of the installed sensor.
+     * @param loopExecutor Executor that runs tasks on the thread of the event loop serving
+     *     <code>anjay</code>, used by {@link #publish(int, Coordinates, Instant)}.
+     * @return {@link Anjay3dIpsoSensor} object.
+     */
+    public static Anjay3dIpsoSensor install(Anjay anjay, int oid, Executor loopExecutor) {
+        Anjay3dIpsoSensor newSensor =
+                new Anjay3dIpsoSensor(
+                        anjay,
+                        oid,
+                        Objects.requireNonNull(loopExecutor, "loopExecutor MUST NOT be null"));
         anjay.registerObject(newSensor);
         return newSensor;
     }
@@ -215,7 +348,9 @@ public final class Anjay3dIpsoSensor implements AnjayObject {
      *     resource won't be created.
      * @param maxRangeValue The maximum value that can be measured by the sensor. If it is empty the
      *     resource won't be created.
-     * @param readValues Callback for reading the current set of values for the 3 axis sensor.
+     * @param readValues Callback for reading the current set of values for the 3 axis sensor. If
+     *     it is an {@link AnjaySensorValue}, values are only processed when its sequence number
+     *     changes.
      */
     public synchronized void instanceAdd(
             int iid,
@@ -227,19 +362,127 @@ public final class Anjay3dIpsoSensor implements AnjayObject {
             throw new InvalidParameterException("IID already in use");
         }
 
-        instances.put(iid, new Instance(iid, unit, minRangeValue, maxRangeValue, readValues));
+        instances.put(
+                iid, new Instance(iid, unit, minRangeValue, maxRangeValue, readValues, false));
+        resourcesVersion++;
+        anjay.notifyInstancesChanged(oid);
+    }
+
+    /**
+     * Adds a push-fed instance of a sensor object, whose values are set using {@link #publish(int,
+     * Coordinates, Instant)} instead of being read from a callback. Such instance also has the
+     * Timestamp resource, containing the time of the most recent measurement.
+     *
+     * @param iid IID of the added instance.
+     * @param unit Unit of the measured values.
+     * @param minRangeValue The minimum value that can be measured by the sensor. If it is empty the
+     *     resource won't be created.
+     * @param maxRangeValue The maximum value that can be measured by the sensor. If it is empty the
+     *     resource won't be created.
+     * @param initialValues Values reported until the first call to {@link #publish(int,
+     *     Coordinates, Instant)}.
+     * @throws IllegalStateException if the sensor has been installed without a <code>loopExecutor
+     *     </code>.
+     */
+    public synchronized void instanceAdd(
+            int iid,
+            String unit,
+            Optional<Double> minRangeValue,
+            Optional<Double> maxRangeValue,
+            Coordinates initialValues) {
+        if (loopExecutor == null) {
+            throw new IllegalStateException("Push-fed instances require a loopExecutor");
+        }
+        if (instances.containsKey(iid)) {
+            throw new InvalidParameterException("IID already in use");
+        }
+
+        instances.put(
+                iid,
+                new Instance(
+                        iid,
+                        unit,
+                        minRangeValue,
+                        maxRangeValue,
+                        new AnjaySensorValue<>(initialValues),
+                        true));
+        resourcesVersion++;
         anjay.notifyInstancesChanged(oid);
     }
 
+    /**
+     * Publishes a new measurement of a push-fed instance. May be called from any thread; the change
+     * is notified on the event loop thread, using the <code>loopExecutor</code> the sensor has been
+     * installed with, subject to the deadband set for the instance. Measurements published in quick
+     * succession are coalesced, so that only the most recent one is processed.
+     *
+     * @param iid IID of the instance, added with {@link #instanceAdd(int, String, Optional,
+     *     Optional, Coordinates)}.
+     * @param values Measured values.
+     * @param timestamp Time of the measurement.
+     * @throws IllegalArgumentException if there is no push-fed instance with a given IID.
+     * @throws IllegalStateException if the sensor has been installed without a <code>loopExecutor
+     *     </code>.
+     */
+    public void publish(int iid, Coordinates values, Instant timestamp) {
+        if (loopExecutor == null) {
+            throw new IllegalStateException("Push-fed instances require a loopExecutor");
+        }
+        Instance inst;
+        synchronized (this) {
+            inst = instances.get(iid);
+        }
+        if (inst == null || !inst.pushFed) {
+            throw new IllegalArgumentException("Invalid IID");
+        }
+        inst.sensorValue.set(values, timestamp);
+        if (inst.updatePending.compareAndSet(false, true)) {
+            try {
+                loopExecutor.execute(() -> processPublished(inst));
+            } catch (RuntimeException e) {
+                inst.updatePending.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void processPublished(Instance inst) {
+        // cleared before reading the values, so that values published from now on are not missed
+        inst.updatePending.set(false);
+        if (instances.get(inst.iid) == inst) {
+            inst.updateValues();
+        }
+    }
+
     @Override
     public synchronized void instanceRemove(int iid) {
         if (instances.remove(iid) != null) {
+            resourcesVersion++;
             anjay.notifyInstancesChanged(oid);
         } else {
             throw new IllegalArgumentException("Invalid IID");
         }
     }
 
+    /**
+     * Sets the deadband of a sensor object instance. Changes of an axis value by no more than
+     * <code>deadband</code>, relative to the most recently reported value, are not reported to the
+     * library. By default, every change is reported.
+     *
+     * @param iid IID of the instance.
+     * @param deadband Non-negative deadband, in units of the measured values.
+     */
+    public synchronized void setDeadband(int iid, double deadband) {
+        if (!(deadband >= 0.0)) {
+            throw new IllegalArgumentException("Deadband MUST be a non-negative number");
+        }
+        Instance inst = instances.get(iid);
+        if (inst == null) {
+            throw new IllegalArgumentException("Invalid IID");
+        }
+        inst.deadband = deadband;
+    }
+
     /**
      * Updates a three axis sensor object instance.
      *
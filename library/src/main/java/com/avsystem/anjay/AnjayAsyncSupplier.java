@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Supplier that never blocks the event loop thread, meant to wrap potentially slow callbacks passed
+ * to objects such as {@link AnjayBasicIpsoSensor} or {@link Anjay3dIpsoSensor}.
+ *
+ * <p>{@link #get()} immediately returns the last known value, and if it is older than the
+ * configured interval, requests reading a fresh one from the wrapped supplier on a separate {@link
+ * Executor}. Once a value different from the last known one arrives, <code>onRefreshed</code> is
+ * run on the event loop thread (usually to call <code>update()</code> of the object, which then
+ * calls {@link Anjay#notifyChanged notifyChanged()}). This way, a slow data source does not delay
+ * handling of other requests, or other Anjay objects served by the same event loop.
+ *
+ * <p>Example usage with {@link AnjayEventLoop}:
+ *
+ * <pre>{@code
+ * AnjayBasicIpsoSensor sensor = AnjayBasicIpsoSensor.install(anjay, 3303);
+ * sensor.instanceAdd(
+ *         0,
+ *         "Cel",
+ *         Optional.empty(),
+ *         Optional.empty(),
+ *         new AnjayAsyncSupplier<>(
+ *                 this::readTemperatureFromStorage,
+ *                 0.0,
+ *                 Duration.ofSeconds(1),
+ *                 ioExecutor,
+ *                 task -> eventLoop.scheduleTask(loop -> task.run(), Duration.ZERO),
+ *                 () -> sensor.update(0)));
+ * }</pre>
+ *
+ * @param <T> Type of the supplied values.
+ */
+public final class AnjayAsyncSupplier<T> implements Supplier<T> {
+    private static final Logger LOGGER = Logger.getLogger(AnjayAsyncSupplier.class.getName());
+
+    private final Supplier<T> source;
+    private final long minRefreshIntervalNanos;
+    private final Executor refreshExecutor;
+    private final Executor loopExecutor;
+    private final Runnable onRefreshed;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile T value;
+    private volatile boolean refreshedOnce = false;
+    private volatile long lastRefreshNanos;
+
+    /**
+     * @param source Supplier of fresh values. It is called on <code>refreshExecutor</code> only,
+     *     never concurrently with itself, and may block. It MUST NOT return null.
+     * @param initialValue Value returned until the first refresh completes.
+     * @param minRefreshInterval Minimum time between the starts of subsequent refreshes triggered
+     *     by {@link #get()}.
+     * @param refreshExecutor Executor on which <code>source</code> is called.
+     * @param loopExecutor Executor that runs tasks on the event loop thread, e.g. one based on
+     *     {@link AnjayEventLoop#scheduleTask scheduleTask()} or {@link
+     *     AnjayEventLoopGroup#execute(Anjay, java.util.function.Consumer)}.
+     * @param onRefreshed Task run on <code>loopExecutor</code> whenever a refresh yields a value
+     *     different from the last known one.
+     */
+    public AnjayAsyncSupplier(
+            Supplier<T> source,
+            T initialValue,
+            Duration minRefreshInterval,
+            Executor refreshExecutor,
+            Executor loopExecutor,
+            Runnable onRefreshed) {
+        this.source = Objects.requireNonNull(source, "source MUST NOT be null");
+        this.value = Objects.requireNonNull(initialValue, "initialValue MUST NOT be null");
+        if (minRefreshInterval.isNegative()) {
+            throw new IllegalArgumentException("Minimum refresh interval must be non-negative");
+        }
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.refreshExecutor =
+                Objects.requireNonNull(refreshExecutor, "refreshExecutor MUST NOT be null");
+        this.loopExecutor = Objects.requireNonNull(loopExecutor, "loopExecutor MUST NOT be null");
+        this.onRefreshed = Objects.requireNonNull(onRefreshed, "onRefreshed MUST NOT be null");
+    }
+
+    /**
+     * Returns the last known value without blocking. Requests a refresh if the value is older than
+     * the minimum refresh interval.
+     *
+     * @return Last known value.
+     */
+    @Override
+    public T get() {
+        T result = value;
+        if (!refreshedOnce || System.nanoTime() - lastRefreshNanos >= minRefreshIntervalNanos) {
+            refresh();
+        }
+        return result;
+    }
+
+    /**
+     * Requests reading a fresh value, regardless of the minimum refresh interval. Does nothing if a
+     * refresh is already in progress. May be called from any thread.
+     */
+    public void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        lastRefreshNanos = System.nanoTime();
+        refreshedOnce = true;
+        try {
+            refreshExecutor.execute(this::doRefresh);
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+            LOGGER.log(Level.WARNING, "could not schedule value refresh", e);
+        }
+    }
+
+    private void doRefresh() {
+        try {
+            T newValue = Objects.requireNonNull(source.get(), "source returned null");
+            if (!newValue.equals(value)) {
+                value = newValue;
+                loopExecutor.execute(onRefreshed);
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "value refresh failed", t);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+}
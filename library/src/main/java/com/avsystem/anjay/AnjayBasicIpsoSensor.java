@@ -17,11 +17,17 @@
 package com.avsystem.anjay;
 
 import java.security.InvalidParameterException;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 public final class AnjayBasicIpsoSensor implements AnjayObject {
@@ -31,35 +37,92 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
         public static final int MIN_RANGE_VALUE = 5603;
         public static final int MAX_RANGE_VALUE = 5604;
         public static final int RESET_MIN_AND_MAX_MEASURED_VALUES = 5605;
+        public static final int TIMESTAMP = 5518;
         public static final int SENSOR_VALUE = 5700;
         public static final int SENSOR_UNITS = 5701;
     }
 
+    /** Lowest and highest of the values published since they were last processed. */
+    private static final class PublishedRange {
+        private final double min;
+        private final double max;
+
+        private PublishedRange(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+    }
+
     private final class Instance {
         private final int iid;
 
         private final String unit;
         private final Optional<Double> minRangeValue;
         private final Optional<Double> maxRangeValue;
+        private final SortedSet<ResourceDef> resourceDefs;
+        private final Anjay.NotificationBatch notifications = new Anjay.NotificationBatch();
         private double minMeasuredValue;
         private double maxMeasuredValue;
         private double currentValue;
+        private Instant timestamp;
 
         private final Supplier<Double> readValue;
-
+        // Set if readValue is an AnjaySensorValue, in which case values with an already seen
+        // sequence number are not processed again.
+        private final AnjaySensorValue<Double> sensorValue;
+        private long lastSequence;
+        // True if values are published using publish() rather than read from the supplier.
+        private final boolean pushFed;
+        // Set while processing of published values is scheduled on loopExecutor.
+        private final AtomicBoolean updatePending = new AtomicBoolean(false);
+        // Only the most recent of the values published in quick succession is processed, but all
+        // of them are folded into the Min/Max Measured Value resources using this range.
+        private final AtomicReference<PublishedRange> publishedRange = new AtomicReference<>();
+
+        @SuppressWarnings("unchecked")
         public Instance(
                 Integer iid,
                 String unit,
                 Optional<Double> minRangeValue,
                 Optional<Double> maxRangeValue,
-                Supplier<Double> readValue) {
+                Supplier<Double> readValue,
+                boolean pushFed) {
             this.iid = iid;
             this.unit = unit;
             this.minRangeValue = minRangeValue;
             this.maxRangeValue = maxRangeValue;
-            this.readValue = readValue;
 
-            currentValue = readValue.get();
+            TreeSet<ResourceDef> resourceDefs = new TreeSet<>();
+            resourceDefs.add(new ResourceDef(Resource.MIN_MEASURED_VALUE, ResourceKind.R, true));
+            resourceDefs.add(new ResourceDef(Resource.MAX_MEASURED_VALUE, ResourceKind.R, true));
+            resourceDefs.add(
+                    new ResourceDef(
+                            Resource.MIN_RANGE_VALUE,
+                            ResourceKind.R,
+                            minRangeValue.isPresent()));
+            resourceDefs.add(
+                    new ResourceDef(
+                            Resource.MAX_RANGE_VALUE,
+                            ResourceKind.R,
+                            maxRangeValue.isPresent()));
+            resourceDefs.add(new ResourceDef(Resource.SENSOR_UNITS, ResourceKind.R, true));
+            resourceDefs.add(
+                    new ResourceDef(Resource.RESET_MIN_AND_MAX_MEASURED_VALUES, ResourceKind.E, true));
+            resourceDefs.add(new ResourceDef(Resource.SENSOR_VALUE, ResourceKind.R, true));
+            resourceDefs.add(new ResourceDef(Resource.TIMESTAMP, ResourceKind.R, pushFed));
+            this.resourceDefs = Collections.unmodifiableSortedSet(resourceDefs);
+            this.readValue = readValue;
+            this.pushFed = pushFed;
+            if (readValue instanceof AnjaySensorValue) {
+                this.sensorValue = (AnjaySensorValue<Double>) readValue;
+                AnjaySensorValue.Snapshot<Double> snapshot = sensorValue.snapshot();
+                currentValue = snapshot.getValue();
+                lastSequence = snapshot.getSequence();
+                timestamp = snapshot.getTimestamp();
+            } else {
+                this.sensorValue = null;
+                currentValue = readValue.get();
+            }
             this.resetMinMaxMeasured();
         }
 
@@ -75,21 +138,73 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
             return maxRangeValue;
         }
 
+        /** Called from any thread by {@link AnjayBasicIpsoSensor#publish}. */
+        private void recordPublished(double value) {
+            PublishedRange previous;
+            PublishedRange next;
+            do {
+                previous = publishedRange.get();
+                if (previous == null) {
+                    next = new PublishedRange(value, value);
+                } else if (value >= previous.min && value <= previous.max) {
+                    return;
+                } else {
+                    next =
+                            new PublishedRange(
+                                    Double.min(previous.min, value),
+                                    Double.max(previous.max, value));
+                }
+            } while (!publishedRange.compareAndSet(previous, next));
+        }
+
+        private void foldMeasuredValue(double min, double max) {
+            if (min < minMeasuredValue) {
+                minMeasuredValue = min;
+                notifications.add(oid, iid, Resource.MIN_MEASURED_VALUE);
+            }
+
+            if (max > maxMeasuredValue) {
+                maxMeasuredValue = max;
+                notifications.add(oid, iid, Resource.MAX_MEASURED_VALUE);
+            }
+        }
+
         public final void updateValues() {
-            double newValue = readValue.get();
+            // Values published since the last call may include extremes other than the most
+            // recent value. Folding them again later is harmless, so the range is taken before
+            // reading the value.
+            PublishedRange range = publishedRange.getAndSet(null);
+            if (range != null) {
+                foldMeasuredValue(range.min, range.max);
+            }
+
+            double newValue;
+            if (sensorValue != null) {
+                AnjaySensorValue.Snapshot<Double> snapshot = sensorValue.snapshot();
+                if (snapshot.getSequence() != lastSequence) {
+                    lastSequence = snapshot.getSequence();
+                    timestamp = snapshot.getTimestamp();
+                    // a repeated measurement has a new timestamp even if the value is the same
+                    if (pushFed) {
+                        notifications.add(oid, iid, Resource.TIMESTAMP);
+                    }
+                }
+                newValue = snapshot.getValue();
+            } else {
+                newValue = readValue.get();
+            }
 
             if (newValue != currentValue) {
                 currentValue = newValue;
-                anjay.notifyChanged(oid, iid, Resource.SENSOR_VALUE);
-
-                if (currentValue < minMeasuredValue) {
-                    minMeasuredValue = Double.min(minMeasuredValue, currentValue);
-                    anjay.notifyChanged(oid, iid, Resource.MIN_MEASURED_VALUE);
-                }
+                notifications.add(oid, iid, Resource.SENSOR_VALUE);
+                foldMeasuredValue(currentValue, currentValue);
+            }
 
-                if (currentValue > maxMeasuredValue) {
-                    maxMeasuredValue = currentValue;
-                    anjay.notifyChanged(oid, iid, Resource.MAX_MEASURED_VALUE);
+            if (!notifications.isEmpty()) {
+                try {
+                    anjay.notifyChangedBatch(notifications);
+                } finally {
+                    notifications.clear();
                 }
             }
         }
@@ -109,23 +224,39 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
             return currentValue;
         }
 
+        public final Instant getTimestamp() {
+            updateValues();
+            return timestamp;
+        }
+
         public void resetMinMaxMeasured() {
+            publishedRange.set(null);
             minMeasuredValue = currentValue;
-            anjay.notifyChanged(oid, iid, Resource.MIN_MEASURED_VALUE);
-
             maxMeasuredValue = currentValue;
-            anjay.notifyChanged(oid, iid, Resource.MAX_MEASURED_VALUE);
+            try {
+                anjay.notifyChangedBatch(
+                        notifications
+                                .add(oid, iid, Resource.MIN_MEASURED_VALUE)
+                                .add(oid, iid, Resource.MAX_MEASURED_VALUE));
+            } finally {
+                notifications.clear();
+            }
         }
     }
 
     private final Anjay anjay;
     private final int oid;
+    // null if installed without one, in which case push-fed instances are not supported
+    private final Executor loopExecutor;
 
     private final Map<Integer, Instance> instances = new TreeMap<>();
+    // Incremented whenever the set of instances changes, as resources present in them may differ.
+    private long resourcesVersion = 0;
 
-    private AnjayBasicIpsoSensor(Anjay anjay, int oid) {
+    private AnjayBasicIpsoSensor(Anjay anjay, int oid, Executor loopExecutor) {
         this.anjay = anjay;
         this.oid = oid;
+        this.loopExecutor = loopExecutor;
     }
 
     @Override
@@ -140,24 +271,12 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
 
     @Override
     public synchronized SortedSet<ResourceDef> resources(int iid) {
-        TreeSet<ResourceDef> resourceDefs = new TreeSet<>();
-        resourceDefs.add(new ResourceDef(Resource.MIN_MEASURED_VALUE, ResourceKind.R, true));
-        resourceDefs.add(new ResourceDef(Resource.MAX_MEASURED_VALUE, ResourceKind.R, true));
-        resourceDefs.add(
-                new ResourceDef(
-                        Resource.MIN_RANGE_VALUE,
-                        ResourceKind.R,
-                        this.instances.get(iid).minRangeValue.isPresent()));
-        resourceDefs.add(
-                new ResourceDef(
-                        Resource.MAX_RANGE_VALUE,
-                        ResourceKind.R,
-                        this.instances.get(iid).maxRangeValue.isPresent()));
-        resourceDefs.add(new ResourceDef(Resource.SENSOR_UNITS, ResourceKind.R, true));
-        resourceDefs.add(
-                new ResourceDef(Resource.RESET_MIN_AND_MAX_MEASURED_VALUES, ResourceKind.E, true));
-        resourceDefs.add(new ResourceDef(Resource.SENSOR_VALUE, ResourceKind.R, true));
-        return resourceDefs;
+        return this.instances.get(iid).resourceDefs;
+    }
+
+    @Override
+    public synchronized long resourcesVersion() {
+        return resourcesVersion;
     }
 
     @Override
@@ -181,6 +300,9 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
             case Resource.SENSOR_UNITS:
                 context.retString(this.instances.get(iid).getUnit());
                 break;
+            case Resource.TIMESTAMP:
+                context.retLong(this.instances.get(iid).getTimestamp().getEpochSecond());
+                break;
             default:
                 throw new IllegalArgumentException("Unsupported resource " + rid);
         }
@@ -199,14 +321,35 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
     }
 
     /**
-     * Installs the Basic Ipso Sensor object in an Anjay object.
+     * Installs the Basic Ipso Sensor object in an Anjay object. Push-fed instances cannot be
+     * added to it, as they require a <code>loopExecutor</code>.
      *
      * @param anjay Anjay object for which the Basic Sensor is installed.
      * @param oid OID of the installed sensor.
      * @return {@link AnjayBasicIpsoSensor} object.
      */
     public static AnjayBasicIpsoSensor install(Anjay anjay, int oid) {
-        AnjayBasicIpsoSensor newSensor = new AnjayBasicIpsoSensor(anjay, oid);
+        AnjayBasicIpsoSensor newSensor = new AnjayBasicIpsoSensor(anjay, oid, null);
+        anjay.registerObject(newSensor);
+        return newSensor;
+    }
+
+    /**
+     * Installs the Basic Ipso Sensor object in an Anjay object, allowing values of push-fed
+     * instances to be published from any thread.
+     *
+     * @param anjay Anjay object for which the Basic Sensor is installed.
+     * @param oid OID of the installed sensor.
+     * @param loopExecutor Executor that runs tasks on the thread of the event loop serving
+     *     <code>anjay</code>, used by {@link #publish(int, double, Instant)}.
+     * @return {@link AnjayBasicIpsoSensor} object.
+     */
+    public static AnjayBasicIpsoSensor install(Anjay anjay, int oid, Executor loopExecutor) {
+        AnjayBasicIpsoSensor newSensor =
+                new AnjayBasicIpsoSensor(
+                        anjay,
+                        oid,
+                        Objects.requireNonNull(loopExecutor, "loopExecutor MUST NOT be null"));
         anjay.registerObject(newSensor);
         return newSensor;
     }
@@ -221,7 +364,8 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
      *     resource won't be created.
      * @param maxRangeValue The maximum value that can be measured by the sensor. If it is empty the
      *     resource won't be created.
-     * @param readValue Callback for reading the sensor value.
+     * @param readValue Callback for reading the sensor value. If it is an {@link
+     *     AnjaySensorValue}, values are only processed when its sequence number changes.
      */
     public synchronized void instanceAdd(
             int iid,
@@ -233,13 +377,104 @@ public final class AnjayBasicIpsoSensor implements AnjayObject {
             throw new InvalidParameterException("IID already in use");
         }
 
-        instances.put(iid, new Instance(iid, unit, minRangeValue, maxRangeValue, readValue));
+        instances.put(
+                iid, new Instance(iid, unit, minRangeValue, maxRangeValue, readValue, false));
+        resourcesVersion++;
+        anjay.notifyInstancesChanged(oid);
+    }
+
+    /**
+     * Adds a push-fed instance of a sensor object, whose values are set using {@link #publish(int,
+     * double, Instant)} instead of being read from a callback. Such instance also has the Timestamp
+     * resource, containing the time of the most recent measurement.
+     *
+     * @param iid IID of the added instance.
+     * @param unit Unit of the measured values.
+     * @param minRangeValue The minimum value that can be measured by the sensor. If it is empty the
+     *     resource won't be created.
+     * @param maxRangeValue The maximum value that can be measured by the sensor. If it is empty the
+     *     resource won't be created.
+     * @param initialValue Value reported until the first call to {@link #publish(int, double,
+     *     Instant)}.
+     * @throws IllegalStateException if the sensor has been installed without a <code>loopExecutor
+     *     </code>.
+     */
+    public synchronized void instanceAdd(
+            int iid,
+            String unit,
+            Optional<Double> minRangeValue,
+            Optional<Double> maxRangeValue,
+            double initialValue) {
+        if (loopExecutor == null) {
+            throw new IllegalStateException("Push-fed instances require a loopExecutor");
+        }
+        if (instances.containsKey(iid)) {
+            throw new InvalidParameterException("IID already in use");
+        }
+
+        instances.put(
+                iid,
+                new Instance(
+                        iid,
+                        unit,
+                        minRangeValue,
+                        maxRangeValue,
+                        new AnjaySensorValue<>(initialValue),
+                        true));
+        resourcesVersion++;
         anjay.notifyInstancesChanged(oid);
     }
 
+    /**
+     * Publishes a new measurement of a push-fed instance. May be called from any thread; the
+     * Min/Max Measured Value resources are updated and the change is notified on the event loop
+     * thread, using the <code>loopExecutor</code> the sensor has been installed with. Measurements
+     * published in quick succession are coalesced, so that only the most recent one is reported as
+     * the Sensor Value, while the Min/Max Measured Value resources still account for all of them.
+     *
+     * @param iid IID of the instance, added with {@link #instanceAdd(int, String, Optional,
+     *     Optional, double)}.
+     * @param value Measured value.
+     * @param timestamp Time of the measurement.
+     * @throws IllegalArgumentException if there is no push-fed instance with a given IID.
+     * @throws IllegalStateException if the sensor has been installed without a <code>loopExecutor
+     *     </code>.
+     */
+    public void publish(int iid, double value, Instant timestamp) {
+        if (loopExecutor == null) {
+            throw new IllegalStateException("Push-fed instances require a loopExecutor");
+        }
+        Instance inst;
+        synchronized (this) {
+            inst = instances.get(iid);
+        }
+        if (inst == null || !inst.pushFed) {
+            throw new IllegalArgumentException("Invalid IID");
+        }
+        inst.sensorValue.set(value, timestamp);
+        inst.recordPublished(value);
+        if (inst.updatePending.compareAndSet(false, true)) {
+            try {
+                loopExecutor.execute(() -> processPublished(inst));
+            } catch (RuntimeException e) {
+                inst.updatePending.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void processPublished(Instance inst) {
+        // cleared before reading the value, so that values published from now on are not missed
+        inst.updatePending.set(false);
+        if (instances.get(inst.iid) == inst) {
+            inst.updateValues();
+        }
+    }
+
     @Override
     public synchronized void instanceRemove(int iid) {
         if (instances.remove(iid) != null) {
+            resourcesVersion++;
             anjay.notifyInstancesChanged(oid);
         } else {
             throw new IllegalArgumentException("Invalid IID");
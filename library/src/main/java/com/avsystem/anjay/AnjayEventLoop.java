@@ -24,10 +24,11 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,32 +49,78 @@ public final class AnjayEventLoop implements Closeable {
     private final long maxWaitTime;
     private volatile Thread thread;
 
-    private abstract static class EventLoopTask
-            implements Consumer<AnjayEventLoop>, Comparable<EventLoopTask> {
-        private final Instant time;
+    /**
+     * Task scheduled in the event loop using {@link #scheduleTask scheduleTask()} or {@link
+     * #scheduleAtFixedRate scheduleAtFixedRate()}, which may be used to cancel it.
+     */
+    public static final class ScheduledTask {
+        private final Consumer<AnjayEventLoop> task;
+        private final long periodNanos;
+        private volatile boolean cancelled = false;
+
+        // Following fields are accessed only from the event loop thread, apart from
+        // nextSubmitted, which is published by the compare-and-set in submit().
+        private long deadline;
+        private long remainingRounds;
+        private int bucket = -1;
+        private ScheduledTask prev;
+        private ScheduledTask next;
+        private ScheduledTask nextSubmitted;
+
+        private ScheduledTask(Consumer<AnjayEventLoop> task, long deadline, long periodNanos) {
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
 
-        EventLoopTask(Instant time) {
-            this.time = time;
+        /**
+         * Cancels the task. It will not be run afterwards, unless it is running at the time; in the
+         * latter case, a periodic task will not be run again. May be called from any thread.
+         */
+        public void cancel() {
+            cancelled = true;
         }
 
-        @Override
-        public int compareTo(EventLoopTask task) {
-            return time.compareTo(task.time);
+        /** @return True if {@link #cancel()} has been called. */
+        public boolean isCancelled() {
+            return cancelled;
         }
     }
 
-    private final PriorityBlockingQueue<EventLoopTask> eventLoopTasks =
-            new PriorityBlockingQueue<>();
+    // Tasks are kept in a hashed timer wheel: a task due at tick T (counted in TICK_NANOS since
+    // wheelStart) is put into bucket T % WHEEL_SIZE, along with the number of full revolutions of
+    // the wheel remaining until it is due. Inserting and removing a task is O(1). Non-empty buckets
+    // are also marked in a bitmap, so that the next one is found without visiting every bucket.
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final int WHEEL_SIZE = 1024;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final ScheduledTask[] wheel = new ScheduledTask[WHEEL_SIZE];
+    private final long[] occupied = new long[WHEEL_SIZE / Long.SIZE];
+    private final long wheelStart = System.nanoTime();
+    // Next tick to process; all the earlier ones have already been processed.
+    private long currentTick = 0;
+    private int taskCount = 0;
+
+    // Tasks scheduled since the last call to schedRun() or serveAny(), linked through
+    // ScheduledTask.nextSubmitted. Pushed lock-free from any thread, drained by the loop thread.
+    private final AtomicReference<ScheduledTask> submitted = new AtomicReference<>();
+
+    // Set while the loop thread is blocked in Selector.select(), along with the System.nanoTime()
+    // at which it is going to wake up, so that other threads know when they need to wake it up.
+    private volatile boolean selecting = false;
+    private volatile long plannedWakeup;
+
     private final Selector eventLoopSelector;
+    // Value of Anjay#getSocketsGeneration() for which the selector registrations were last updated.
+    private long socketsGeneration = -1;
 
     /**
      * @param anjay {@link Anjay} object used by the event loop
      * @param maxWaitTime Maximum time (in milliseconds) to spend in each call to {@link
-     *     Selector#select(long)}. Larger times will prevent the event loop thread from waking up
-     *     too frequently. However, during this wait time, the call to {@link
-     *     AnjayEventLoop#interrupt()} may not be handled immediately and scheduler jobs requested
-     *     from other threads will not be executed, so shortening this time will make the scheduler
-     *     more responsive.
+     *     Selector#select(long)}. Tasks scheduled with {@link #scheduleTask scheduleTask()} and
+     *     calls to {@link AnjayEventLoop#interrupt()} wake the event loop thread up immediately, so
+     *     this time may be long (e.g. seconds) without affecting their latency.
      * @throws IllegalArgumentException if the timeout is negative
      * @throws IOException thrown by {@link Selector#open()}
      */
@@ -87,6 +134,106 @@ public final class AnjayEventLoop implements Closeable {
         eventLoopSelector = Selector.open();
     }
 
+    private long tickOf(long deadline) {
+        long elapsed = deadline - wheelStart;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        // round up, so that tasks are never run before their deadline
+        return (elapsed + TICK_NANOS - 1) / TICK_NANOS;
+    }
+
+    private void insert(ScheduledTask task) {
+        long tick = Math.max(tickOf(task.deadline), currentTick);
+        int bucket = (int) (tick & WHEEL_MASK);
+        task.remainingRounds = (tick - currentTick) / WHEEL_SIZE;
+        task.bucket = bucket;
+        task.prev = null;
+        task.next = wheel[bucket];
+        if (task.next != null) {
+            task.next.prev = task;
+        }
+        wheel[bucket] = task;
+        occupied[bucket >>> 6] |= 1L << bucket;
+        ++taskCount;
+    }
+
+    private void unlink(ScheduledTask task) {
+        if (task.prev != null) {
+            task.prev.next = task.next;
+        } else {
+            wheel[task.bucket] = task.next;
+            if (task.next == null) {
+                occupied[task.bucket >>> 6] &= ~(1L << task.bucket);
+            }
+        }
+        if (task.next != null) {
+            task.next.prev = task.prev;
+        }
+        task.prev = null;
+        task.next = null;
+        task.bucket = -1;
+        --taskCount;
+    }
+
+    private void drainSubmitted() {
+        ScheduledTask task = submitted.getAndSet(null);
+        while (task != null) {
+            ScheduledTask nextTask = task.nextSubmitted;
+            task.nextSubmitted = null;
+            if (!task.cancelled) {
+                insert(task);
+            }
+            task = nextTask;
+        }
+    }
+
+    private long nanosToNextTask(long limitNanos) {
+        if (taskCount == 0) {
+            return limitNanos;
+        }
+        long limitTicks = Math.min(WHEEL_SIZE, limitNanos / TICK_NANOS + 1);
+        // a non-empty bucket may also hold tasks due in later revolutions; waking up for them is
+        // harmless
+        long ticks = ticksToOccupiedBucket(limitTicks);
+        if (ticks < 0) {
+            return limitNanos;
+        }
+        return Math.min(
+                limitNanos, wheelStart + (currentTick + ticks) * TICK_NANOS - System.nanoTime());
+    }
+
+    /**
+     * @return Number of ticks from currentTick to the nearest non-empty bucket, or -1 if there is
+     *     none within limitTicks.
+     */
+    private long ticksToOccupiedBucket(long limitTicks) {
+        long ticks = 0;
+        while (ticks < limitTicks) {
+            int bucket = (int) ((currentTick + ticks) & WHEEL_MASK);
+            // buckets from this one to the end of its word
+            long word = occupied[bucket >>> 6] >>> bucket;
+            if (word != 0) {
+                ticks += Long.numberOfTrailingZeros(word);
+                return ticks < limitTicks ? ticks : -1;
+            }
+            ticks += Long.SIZE - (bucket & (Long.SIZE - 1));
+        }
+        return -1;
+    }
+
+    private void updateRegistrations() throws ClosedChannelException {
+        Set<SelectableChannel> sockets = new HashSet<>(anjay.getSockets());
+        for (SelectionKey key : eventLoopSelector.keys()) {
+            if (!sockets.remove(key.channel())) {
+                key.cancel();
+            }
+        }
+        for (SelectableChannel socket : sockets) {
+            socket.register(eventLoopSelector, SelectionKey.OP_READ);
+        }
+    }
+
     /**
      * Calls {@link Selector#select(long)} on all sockets currently in use and then {@link
      * Anjay#serve(SelectableChannel)} if appropriate.
@@ -97,31 +244,46 @@ public final class AnjayEventLoop implements Closeable {
      * @throws IOException thrown by {@link Selector#select(long)} or {@link Selector#selectNow()}.
      */
     public synchronized void serveAny() throws IOException {
-        List<SelectableChannel> sockets = anjay.getSockets();
-
-        for (SelectionKey key : eventLoopSelector.keys()) {
-            if (!sockets.contains(key.channel())) {
-                key.cancel();
-            }
-        }
-        for (SelectableChannel socket : sockets) {
-            if (socket.keyFor(eventLoopSelector) == null) {
-                socket.register(eventLoopSelector, SelectionKey.OP_READ);
-            }
+        long generation = anjay.getSocketsGeneration();
+        if (generation != socketsGeneration) {
+            updateRegistrations();
+            socketsGeneration = generation;
         }
 
-        long waitTimeMs = anjay.timeToNext().map(Duration::toMillis).orElse(maxWaitTime);
-        if (waitTimeMs > maxWaitTime) {
-            waitTimeMs = maxWaitTime;
+        drainSubmitted();
+        long maxWaitTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitTime);
+        long waitTimeNanos = maxWaitTimeNanos;
+        long timeToNext = anjay.timeToNextNanos();
+        if (timeToNext >= 0) {
+            waitTimeNanos = Math.min(waitTimeNanos, timeToNext);
         }
-        if (!eventLoopTasks.isEmpty()
-                && eventLoopTasks.peek().time.isBefore(Instant.now().plusMillis(waitTimeMs))) {
-            waitTimeMs = Duration.between(Instant.now(), eventLoopTasks.peek().time).toMillis();
+        waitTimeNanos = nanosToNextTask(waitTimeNanos);
+        long waitTimeMs = maxWaitTime;
+        if (waitTimeNanos < maxWaitTimeNanos) {
+            // round up, so that the loop does not spin before the deadline
+            waitTimeMs =
+                    TimeUnit.NANOSECONDS.toMillis(
+                            Math.max(0L, waitTimeNanos) + TimeUnit.MILLISECONDS.toNanos(1L) - 1L);
         }
+        int readyCount;
         if (waitTimeMs <= 0) {
-            eventLoopSelector.selectNow();
+            readyCount = eventLoopSelector.selectNow();
         } else {
-            eventLoopSelector.select(waitTimeMs);
+            plannedWakeup = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeMs);
+            selecting = true;
+            try {
+                // a task submitted after drainSubmitted() might have missed the flag set above
+                if (submitted.get() != null) {
+                    readyCount = eventLoopSelector.selectNow();
+                } else {
+                    readyCount = eventLoopSelector.select(waitTimeMs);
+                }
+            } finally {
+                selecting = false;
+            }
+        }
+        if (readyCount == 0) {
+            return;
         }
         for (Iterator<SelectionKey> it = eventLoopSelector.selectedKeys().iterator();
                 it.hasNext(); ) {
@@ -135,26 +297,59 @@ public final class AnjayEventLoop implements Closeable {
     }
 
     /**
-     * Runs Anjay tasks and those from the eventLoopTasks while there is some task ready to be run.
+     * Runs Anjay tasks and those scheduled in the event loop while there is some task ready to be
+     * run.
      *
      * <p>This is intended as a building block for custom event loops.
      *
-     * @throws InterruptedException thrown by {@link PriorityBlockingQueue#take()}.
+     * @throws InterruptedException never thrown, declared for compatibility.
      */
     public synchronized void schedRun() throws InterruptedException {
-        Instant now = Instant.now();
-        List<EventLoopTask> activeTasks = new LinkedList<>();
-        while (eventLoopTasks.peek() != null && eventLoopTasks.peek().time.compareTo(now) <= 0) {
-            activeTasks.add(eventLoopTasks.take());
-        }
-        for (EventLoopTask task : activeTasks) {
-            task.accept(this);
+        drainSubmitted();
+        long now = System.nanoTime();
+        long lastDueTick = tickOf(now + 1) - 1;
+        while (currentTick <= lastDueTick) {
+            ScheduledTask task = wheel[(int) (currentTick & WHEEL_MASK)];
+            // the tick is advanced first, so that tasks rescheduled for now end up in the next one
+            ++currentTick;
+            while (task != null) {
+                ScheduledTask nextTask = task.next;
+                if (task.cancelled) {
+                    unlink(task);
+                } else if (task.remainingRounds > 0) {
+                    --task.remainingRounds;
+                } else {
+                    unlink(task);
+                    runTask(task);
+                }
+                task = nextTask;
+            }
         }
-        if (!thread.isInterrupted() && anjay.timeToNext().map(Duration::toMillis).orElse(1L) <= 0) {
+        Thread eventLoopThread = thread;
+        if ((eventLoopThread == null || !eventLoopThread.isInterrupted())
+                && isAnjayJobDue()) {
             anjay.schedRun();
         }
     }
 
+    private boolean isAnjayJobDue() {
+        long timeToNext = anjay.timeToNextNanos();
+        return timeToNext >= 0 && TimeUnit.NANOSECONDS.toMillis(timeToNext) <= 0;
+    }
+
+    private void runTask(ScheduledTask task) {
+        try {
+            task.task.accept(this);
+        } catch (Throwable t) {
+            Logger.getAnonymousLogger().log(Level.WARNING, "event loop task failed", t);
+        }
+        if (task.periodNanos > 0 && !task.cancelled) {
+            // fixed rate: the next deadline does not depend on when the task actually ran
+            task.deadline += task.periodNanos;
+            insert(task);
+        }
+    }
+
     /**
      * Runs Anjay's main event loop that executes {@link Anjay#serve(SelectableChannel)} and {@link
      * Anjay#schedRun()} as appropriate.
@@ -184,21 +379,62 @@ public final class AnjayEventLoop implements Closeable {
         }
     }
 
+    private ScheduledTask submit(ScheduledTask task) {
+        ScheduledTask head;
+        do {
+            head = submitted.get();
+            task.nextSubmitted = head;
+        } while (!submitted.compareAndSet(head, task));
+        // if the loop is not in select(), it will pick the task up before calling it again
+        if (selecting && task.deadline - plannedWakeup < 0) {
+            eventLoopSelector.wakeup();
+        }
+        return task;
+    }
+
     /**
-     * Schedules an event loop task with a time in which it should be runned.
+     * Schedules an event loop task with a time in which it should be runned. May be called from
+     * any thread.
      *
      * @param task Task to be run in the event loop, it takes AnjayEventLoop as an argument, which
      *     is meant to serve mainly for task rescheduling.
      * @param time Time when the task should be run.
+     * @return Handle that may be used to cancel the task.
      */
-    public void scheduleTask(Consumer<AnjayEventLoop> task, Instant time) {
-        eventLoopTasks.add(
-                new EventLoopTask(time) {
-                    @Override
-                    public void accept(AnjayEventLoop anjayEventLoop) {
-                        task.accept(anjayEventLoop);
-                    }
-                });
+    public ScheduledTask scheduleTask(Consumer<AnjayEventLoop> task, Instant time) {
+        return scheduleTask(task, Duration.between(Instant.now(), time));
+    }
+
+    /**
+     * Schedules an event loop task to be run after a given delay. May be called from any thread.
+     *
+     * @param task Task to be run in the event loop.
+     * @param delay Time after which the task should be run.
+     * @return Handle that may be used to cancel the task.
+     */
+    public ScheduledTask scheduleTask(Consumer<AnjayEventLoop> task, Duration delay) {
+        return submit(new ScheduledTask(task, System.nanoTime() + delay.toNanos(), 0L));
+    }
+
+    /**
+     * Schedules an event loop task to be run periodically, until cancelled. Subsequent runs are
+     * scheduled at fixed rate, i.e. at <code>initialDelay + n * period</code>, regardless of how
+     * long the previous runs took. May be called from any thread.
+     *
+     * @param task Task to be run in the event loop.
+     * @param initialDelay Time after which the task should be run for the first time.
+     * @param period Period between subsequent runs.
+     * @return Handle that may be used to cancel the task.
+     * @throws IllegalArgumentException if the period is not positive
+     */
+    public ScheduledTask scheduleAtFixedRate(
+            Consumer<AnjayEventLoop> task, Duration initialDelay, Duration period) {
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return submit(
+                new ScheduledTask(
+                        task, System.nanoTime() + initialDelay.toNanos(), period.toNanos()));
     }
 
     /**
@@ -212,6 +448,7 @@ public final class AnjayEventLoop implements Closeable {
             throw new IllegalStateException();
         } else {
             eventLoopThread.interrupt();
+            eventLoopSelector.wakeup();
         }
     }
 
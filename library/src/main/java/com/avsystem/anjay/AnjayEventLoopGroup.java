@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed pool of {@link AnjaySharedEventLoop}s, each running on its own thread.
+ *
+ * <p>Every added {@link Anjay} object is pinned to a single loop (the one serving the smallest
+ * number of objects at the time), and is served by it until removed. This allows serving a large
+ * number of Anjay objects with a number of threads that matches the number of available cores.
+ */
+public final class AnjayEventLoopGroup implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(AnjayEventLoopGroup.class.getName());
+
+    private final AnjaySharedEventLoop[] loops;
+    private final Thread[] threads;
+    private final Map<Anjay, Integer> assignments = new ConcurrentHashMap<>();
+    // Number of objects assigned to each loop; unlike AnjaySharedEventLoop.size(), it is updated
+    // immediately, so that objects added in quick succession are spread evenly.
+    private final AtomicIntegerArray loads;
+
+    /**
+     * Creates the loops and starts their threads.
+     *
+     * @param threadCount Number of loops (and threads) in the group.
+     * @param maxWaitTime Maximum time (in milliseconds) to spend in each call to {@link
+     *     java.nio.channels.Selector#select(long)}, see {@link
+     *     AnjaySharedEventLoop#AnjaySharedEventLoop(long)}.
+     * @throws IllegalArgumentException if <code>threadCount</code> is not positive or the timeout
+     *     is negative
+     * @throws IOException thrown by {@link java.nio.channels.Selector#open()}
+     */
+    public AnjayEventLoopGroup(int threadCount, long maxWaitTime) throws IOException {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.loops = new AnjaySharedEventLoop[threadCount];
+        this.threads = new Thread[threadCount];
+        this.loads = new AtomicIntegerArray(threadCount);
+        try {
+            for (int i = 0; i < threadCount; ++i) {
+                this.loops[i] = new AnjaySharedEventLoop(maxWaitTime);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (AnjaySharedEventLoop loop : this.loops) {
+                if (loop != null) {
+                    loop.close();
+                }
+            }
+            throw e;
+        }
+        for (int i = 0; i < threadCount; ++i) {
+            final AnjaySharedEventLoop loop = this.loops[i];
+            this.threads[i] =
+                    new Thread(
+                            () -> {
+                                try {
+                                    loop.run();
+                                } catch (IOException | RuntimeException e) {
+                                    // The loop has stopped, and completes the commands submitted
+                                    // to it without running them.
+                                    LOGGER.log(Level.SEVERE, "event loop failed", e);
+                                }
+                            },
+                            "anjay-event-loop-" + i);
+            this.threads[i].setDaemon(true);
+            this.threads[i].start();
+        }
+    }
+
+    private int leastLoaded() {
+        int result = 0;
+        for (int i = 1; i < loops.length; ++i) {
+            if (loops[result].isStopped()
+                    || (!loops[i].isStopped() && loads.get(i) < loads.get(result))) {
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds an Anjay object to one of the loops.
+     *
+     * @param anjay Anjay object to serve. Loops that have failed are not used.
+     * @return Future completed once the object is served, or completed exceptionally if all loops
+     *     have failed.
+     * @throws IllegalArgumentException if the object has already been added.
+     * @see AnjaySharedEventLoop#add(Anjay)
+     */
+    public CompletableFuture<Void> add(Anjay anjay) {
+        int index = leastLoaded();
+        if (assignments.putIfAbsent(anjay, index) != null) {
+            throw new IllegalArgumentException("Anjay object already added to the group");
+        }
+        loads.incrementAndGet(index);
+        return loops[index].add(anjay);
+    }
+
+    /**
+     * Removes an Anjay object from the loop it is served by.
+     *
+     * @param anjay Anjay object to stop serving.
+     * @return Future completed once the object is no longer accessed by the loop.
+     * @see AnjaySharedEventLoop#remove(Anjay)
+     */
+    public CompletableFuture<Void> remove(Anjay anjay) {
+        Integer index = assignments.remove(anjay);
+        if (index == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        loads.decrementAndGet(index);
+        return loops[index].remove(anjay);
+    }
+
+    /**
+     * Runs <code>task</code> on the thread of the loop that serves <code>anjay</code>.
+     *
+     * @param anjay Anjay object passed to the task.
+     * @param task Task to run.
+     * @throws IllegalArgumentException if the object is not served by the group.
+     * @throws IllegalStateException if the loop serving the object has failed; the object should
+     *     then be removed from the group.
+     * @see AnjaySharedEventLoop#execute(Anjay, Consumer)
+     */
+    public void execute(Anjay anjay, Consumer<Anjay> task) {
+        Integer index = assignments.get(anjay);
+        if (index == null) {
+            throw new IllegalArgumentException("Anjay object not served by the group");
+        }
+        loops[index].execute(anjay, task);
+    }
+
+    /** @return Number of Anjay objects served by the group. */
+    public int size() {
+        return assignments.size();
+    }
+
+    /** Stops all loops and waits for their threads to finish. */
+    @Override
+    public void close() throws IOException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (AnjaySharedEventLoop loop : loops) {
+            loop.close();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
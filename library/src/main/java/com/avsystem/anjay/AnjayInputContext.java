@@ -18,29 +18,29 @@ package com.avsystem.anjay;
 
 import com.avsystem.anjay.Anjay.Objlnk;
 import com.avsystem.anjay.impl.NativeInputContext;
-import com.avsystem.anjay.impl.NativeInputContextPointer;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /** Context from which values sent by LwM2M Server can be read. */
 public final class AnjayInputContext implements AutoCloseable {
-    private NativeInputContext context;
+    private final NativeInputContext context;
 
-    /** Closes the context - it is not intended to be called by user. */
+    /**
+     * Does nothing - it is not intended to be called by user. The context becomes unusable as soon
+     * as the handler it was passed to returns.
+     */
     @Override
-    public void close() {
-        this.context = null;
-    }
+    public void close() {}
 
     private NativeInputContext getContext() {
-        if (this.context == null) {
-            throw new IllegalStateException("Attempted to use closed AnjayInputContext");
-        }
         return this.context;
     }
 
     /** Creates input context - it is not intended to be called by user. */
-    public AnjayInputContext(NativeInputContextPointer pointer) {
-        this.context = new NativeInputContext(pointer);
+    public AnjayInputContext(NativeInputContext context) {
+        this.context = context;
     }
 
     /**
@@ -134,4 +134,30 @@ public final class AnjayInputContext implements AutoCloseable {
     public byte[] getAllBytes() throws AnjayException {
         return this.getContext().getAllBytes();
     }
+
+    /**
+     * Reads all bytes from the RPC request content and writes them to the stream, chunk by chunk,
+     * without buffering the whole value in memory.
+     *
+     * @param output Stream to write bytes to.
+     * @return Number of bytes written.
+     * @throws AnjayException In case of failure.
+     * @throws IOException If writing to <code>output</code> fails.
+     */
+    public long transferTo(OutputStream output) throws AnjayException, IOException {
+        return this.getContext().transferTo(output);
+    }
+
+    /**
+     * Reads all bytes from the RPC request content and writes them to the channel, chunk by chunk,
+     * without buffering the whole value in memory. The channel is expected to be in blocking mode.
+     *
+     * @param channel Channel to write bytes to.
+     * @return Number of bytes written.
+     * @throws AnjayException In case of failure.
+     * @throws IOException If writing to <code>channel</code> fails.
+     */
+    public long transferTo(WritableByteChannel channel) throws AnjayException, IOException {
+        return this.getContext().transferTo(channel);
+    }
 }
@@ -17,6 +17,8 @@
 package com.avsystem.anjay;
 
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeMap;
@@ -93,13 +95,26 @@ public final class AnjayIpsoButton implements AnjayObject {
         return new TreeSet<>(instances.keySet());
     }
 
+    private static final SortedSet<ResourceDef> RESOURCE_DEFS =
+            Collections.unmodifiableSortedSet(
+                    new TreeSet<>(
+                            Arrays.asList(
+                                    new ResourceDef(
+                                            Resource.APPLICATION_TYPE, ResourceKind.RW, true),
+                                    new ResourceDef(
+                                            Resource.DIGITAL_INPUT_COUNTER, ResourceKind.R, true),
+                                    new ResourceDef(
+                                            Resource.DIGITAL_INPUT_STATE, ResourceKind.R, true))));
+
     @Override
     public SortedSet<ResourceDef> resources(int iid) {
-        TreeSet<ResourceDef> resourceDefs = new TreeSet<>();
-        resourceDefs.add(new ResourceDef(Resource.APPLICATION_TYPE, ResourceKind.RW, true));
-        resourceDefs.add(new ResourceDef(Resource.DIGITAL_INPUT_COUNTER, ResourceKind.R, true));
-        resourceDefs.add(new ResourceDef(Resource.DIGITAL_INPUT_STATE, ResourceKind.R, true));
-        return resourceDefs;
+        return RESOURCE_DEFS;
+    }
+
+    @Override
+    public long resourcesVersion() {
+        // All instances share the same, immutable set of resources.
+        return 0;
     }
 
     @Override
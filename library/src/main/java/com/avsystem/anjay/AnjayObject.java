@@ -136,6 +136,23 @@ public interface AnjayObject {
      */
     SortedSet<Integer> instances();
 
+    /**
+     * A handler that returns all Object Instances for the Object as an array of primitive integers.
+     *
+     * <p>By default, it converts the result of {@link #instances}. Objects with large numbers of
+     * instances may override it to avoid boxing every Instance ID - the library calls only this
+     * method, never {@link #instances} directly.
+     *
+     * @return Array with Instance IDs, sorted in strictly ascending order.
+     */
+    default int[] instanceIds() {
+        SortedSet<Integer> instances = instances();
+        if (instances == null) {
+            return new int[0];
+        }
+        return instances.stream().mapToInt(Integer::intValue).toArray();
+    }
+
     /**
      * A handler that shall reset Object Instance to its default (after creational) state.
      *
@@ -193,6 +210,22 @@ public interface AnjayObject {
         return null;
     }
 
+    /**
+     * A handler that returns version of the Resource definitions returned by {@link #resources}.
+     *
+     * <p>If it returns a non-negative value, the library caches Resource definitions of every
+     * Object Instance and calls {@link #resources} again only after the returned value changes.
+     * Such Object MUST return a different value whenever the result of {@link #resources} might
+     * have changed for any of its Instances, e.g. when an Instance is removed and then added again
+     * with a different set of present Resources.
+     *
+     * @return Version of the Resource definitions, or a negative value (default) if they shall not
+     *     be cached.
+     */
+    default long resourcesVersion() {
+        return -1;
+    }
+
     /**
      * A handler that reads the Resource value, called only if the Resource is PRESENT and is one of
      * the {@link ResourceKind#R} or {@link ResourceKind#RW} kinds (as returned by {@link
@@ -335,6 +368,29 @@ public interface AnjayObject {
         return null;
     }
 
+    /**
+     * A handler that returns all Resource Instances of a Multiple Resource as an array of primitive
+     * integers, called under the same conditions as {@link #resourceInstances}.
+     *
+     * <p>By default, it converts the result of {@link #resourceInstances}. Objects may override it
+     * to avoid boxing every Resource Instance ID - the library calls only this method, never {@link
+     * #resourceInstances} directly.
+     *
+     * @param iid Object Instance ID.
+     * @param rid Resource ID.
+     * @return Array with Resource Instance IDs, sorted in strictly ascending order.
+     * @throws Exception In case of error. If {@link AnjayException} is thrown with one of defined
+     *     error codes, the response message will have an appropriate CoAP response code. Otherwise,
+     *     the device will respond with an unspecified (but valid) error code.
+     */
+    default int[] resourceInstanceIds(int iid, int rid) throws Exception {
+        SortedSet<Integer> instances = resourceInstances(iid, rid);
+        if (instances == null) {
+            return new int[0];
+        }
+        return instances.stream().mapToInt(Integer::intValue).toArray();
+    }
+
     /**
      * A handler that is called when there is a request that might modify an Object and fail. Such
      * situation often requires to rollback changes, and this handler shall implement logic that
@@ -18,29 +18,26 @@ package com.avsystem.anjay;
 
 import com.avsystem.anjay.Anjay.Objlnk;
 import com.avsystem.anjay.impl.NativeOutputContext;
-import com.avsystem.anjay.impl.NativeOutputContextPointer;
 import java.nio.ByteBuffer;
 
 /** Context which is used to send values to the LwM2M Server. */
 public final class AnjayOutputContext implements AutoCloseable {
-    private NativeOutputContext context;
+    private final NativeOutputContext context;
 
-    /** Closes the context - it is not intended to be called by user. */
+    /**
+     * Does nothing - it is not intended to be called by user. The context becomes unusable as soon
+     * as the handler it was passed to returns.
+     */
     @Override
-    public void close() {
-        this.context = null;
-    }
+    public void close() {}
 
     private NativeOutputContext getContext() {
-        if (this.context == null) {
-            throw new IllegalStateException("Attempted to use closed AnjayOutputContext");
-        }
         return this.context;
     }
 
     /** Creates output context - it is not intended to be called by user. */
-    public AnjayOutputContext(NativeOutputContextPointer pointer) {
-        this.context = new NativeOutputContext(pointer);
+    public AnjayOutputContext(NativeOutputContext context) {
+        this.context = context;
     }
 
     /**
@@ -124,15 +121,16 @@ public final class AnjayOutputContext implements AutoCloseable {
     }
 
     /**
-     * Returns bytes from the data model handler.
+     * Returns bytes from the data model handler. Contents of direct buffers are passed to the
+     * native library without any intermediate copies.
      *
-     * @param buffer Bytes to return.
+     * @param buffer Bytes to return, from its position up to its limit. Position of the buffer is
+     *     not modified.
      * @throws AnjayException In case of failure.
      */
     public void retBytes(ByteBuffer buffer) throws AnjayException {
-        ByteBuffer slice = buffer.slice();
-        try (AnjayBytesContext context = retBytes(slice.capacity())) {
-            context.append(slice);
+        try (AnjayBytesContext context = retBytes(buffer.remaining())) {
+            context.append(buffer);
         }
     }
 
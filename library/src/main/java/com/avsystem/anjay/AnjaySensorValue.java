@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free holder of the most recent value of a sensor, which may be written from any thread
+ * (e.g. one receiving measurements from the network) and read from the event loop thread.
+ *
+ * <p>Each value is stored along with a sequence number incremented on every {@link #set(Object)}
+ * and the time of the measurement, as a single immutable {@link Snapshot}, so readers never observe
+ * a partially updated value. {@link AnjayBasicIpsoSensor} and {@link Anjay3dIpsoSensor} recognize
+ * this class when passed as the value supplier, and use the sequence number to skip values that
+ * were not updated.
+ *
+ * @param <T> Type of the stored values. Values SHOULD be immutable.
+ */
+public final class AnjaySensorValue<T> implements Supplier<T> {
+    /** Value along with its sequence number and timestamp. */
+    public static final class Snapshot<T> {
+        private final T value;
+        private final long sequence;
+        private final Instant timestamp;
+
+        private Snapshot(T value, long sequence, Instant timestamp) {
+            this.value = value;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /** @return Time at which the value was measured. */
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        /** @return Number of calls to {@link AnjaySensorValue#set(Object)} before this value. */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    private final AtomicReference<Snapshot<T>> snapshot;
+
+    /** @param initialValue Value stored until the first call to {@link #set(Object)}. */
+    public AnjaySensorValue(T initialValue) {
+        this.snapshot =
+                new AtomicReference<>(
+                        new Snapshot<>(
+                                Objects.requireNonNull(
+                                        initialValue, "initialValue MUST NOT be null"),
+                                0L,
+                                Instant.now()));
+    }
+
+    /**
+     * Stores a new value, measured now. May be called from any thread.
+     *
+     * @param value New value.
+     */
+    public void set(T value) {
+        set(value, Instant.now());
+    }
+
+    /**
+     * Stores a new value. May be called from any thread.
+     *
+     * @param value New value.
+     * @param timestamp Time at which the value was measured.
+     */
+    public void set(T value, Instant timestamp) {
+        Objects.requireNonNull(value, "value MUST NOT be null");
+        Objects.requireNonNull(timestamp, "timestamp MUST NOT be null");
+        Snapshot<T> previous;
+        Snapshot<T> next;
+        do {
+            previous = snapshot.get();
+            next = new Snapshot<>(value, previous.sequence + 1, timestamp);
+        } while (!snapshot.compareAndSet(previous, next));
+    }
+
+    /** @return The most recent value along with its sequence number and timestamp. */
+    public Snapshot<T> snapshot() {
+        return snapshot.get();
+    }
+
+    /** @return The most recent value. */
+    @Override
+    public T get() {
+        return snapshot.get().value;
+    }
+
+    /** @return Sequence number of the most recent value. */
+    public long getSequence() {
+        return snapshot.get().sequence;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.avsystem.anjay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event loop that serves many {@link Anjay} objects on a single thread, using a single {@link
+ * Selector}.
+ *
+ * <p>Sockets of all added Anjay objects are registered in the same selector, and readiness of
+ * each socket is dispatched to {@link Anjay#serve(SelectableChannel)} of the Anjay object that owns
+ * it. The loop waits until the earliest of the times reported by {@link Anjay#timeToNext()} of all
+ * objects, and then calls {@link Anjay#schedRun()} only on the objects whose jobs are due.
+ *
+ * <p>Anjay objects are not thread-safe. Once an object has been added to the loop, it MUST only be
+ * accessed from code passed to {@link #execute(Anjay, Consumer)}, which runs on the loop thread.
+ * All other methods of this class may be called from any thread.
+ *
+ * <p>Once the loop fails with an exception, or is closed, it is stopped for good: commands that it
+ * would never run are completed without it, as described for each of them.
+ *
+ * @see AnjayEventLoopGroup
+ */
+public final class AnjaySharedEventLoop implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(AnjaySharedEventLoop.class.getName());
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final class Instance implements Comparable<Instance> {
+        private final Anjay anjay;
+        private final long id;
+        private final List<SelectionKey> keys = new ArrayList<>();
+        private long deadline = NO_DEADLINE;
+        private boolean touched = false;
+        private long socketsGeneration = -1;
+
+        Instance(Anjay anjay, long id) {
+            this.anjay = anjay;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Instance other) {
+            // deadlines are System.nanoTime() values, so they must be compared by subtraction
+            long diff = deadline - other.deadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(id, other.id);
+        }
+    }
+
+    /** Command run on the loop thread. */
+    private interface Command {
+        void run();
+
+        /** Called instead of {@link #run()} if the loop has stopped. */
+        default void abort() {}
+    }
+
+    private final long maxWaitTime;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+    private volatile Thread thread;
+    private volatile boolean stopped = false;
+    private volatile int size = 0;
+
+    // Accessed only from the loop thread.
+    private final Map<Anjay, Instance> instances = new IdentityHashMap<>();
+    private final TreeSet<Instance> byDeadline = new TreeSet<>();
+    private final List<Instance> touched = new ArrayList<>();
+    private long nextId = 0;
+
+    /**
+     * @param maxWaitTime Maximum time (in milliseconds) to spend in each call to {@link
+     *     Selector#select(long)}.
+     * @throws IllegalArgumentException if the timeout is negative
+     * @throws IOException thrown by {@link Selector#open()}
+     */
+    public AnjaySharedEventLoop(long maxWaitTime) throws IOException {
+        if (maxWaitTime < 0L) {
+            throw new IllegalArgumentException("Maximum wait time must be non-negative");
+        }
+        this.maxWaitTime = maxWaitTime;
+        this.selector = Selector.open();
+    }
+
+    private void submit(Command command) {
+        commands.add(command);
+        if (stopped) {
+            // The loop might have drained the queue before the command was added.
+            abortCommands();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    private void abortCommands() {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            try {
+                command.abort();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "failed to abort event loop command", t);
+            }
+        }
+    }
+
+    private void stop() {
+        stopped = true;
+        abortCommands();
+    }
+
+    /** @return True if the loop has failed or has been closed, so it will not run commands. */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Adds an Anjay object to the loop. After this call, the object MUST NOT be accessed other
+     * than from {@link #execute(Anjay, Consumer)}.
+     *
+     * @param anjay Anjay object to serve.
+     * @return Future completed on the loop thread once the object is served by the loop, or
+     *     completed exceptionally with {@link IllegalStateException} if the loop has stopped.
+     */
+    public CompletableFuture<Void> add(Anjay anjay) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        submit(
+                new Command() {
+                    @Override
+                    public void run() {
+                        if (!instances.containsKey(anjay)) {
+                            Instance instance = new Instance(anjay, nextId++);
+                            instances.put(anjay, instance);
+                            size = instances.size();
+                            touch(instance);
+                        }
+                        result.complete(null);
+                    }
+
+                    @Override
+                    public void abort() {
+                        result.completeExceptionally(
+                                new IllegalStateException("Event loop has stopped"));
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Removes an Anjay object from the loop. Once the returned future completes, the object is no
+     * longer accessed by the loop and may be used, or closed, by any thread.
+     *
+     * @param anjay Anjay object to stop serving.
+     * @return Future completed on the loop thread once the object is removed. If the loop has
+     *     stopped, it no longer accesses any object, so the future is completed immediately.
+     */
+    public CompletableFuture<Void> remove(Anjay anjay) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        submit(
+                new Command() {
+                    @Override
+                    public void run() {
+                        Instance instance = instances.remove(anjay);
+                        if (instance != null) {
+                            size = instances.size();
+                            byDeadline.remove(instance);
+                            if (instance.touched) {
+                                touched.remove(instance);
+                            }
+                            for (SelectionKey key : instance.keys) {
+                                key.cancel();
+                            }
+                        }
+                        result.complete(null);
+                    }
+
+                    @Override
+                    public void abort() {
+                        result.complete(null);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Runs <code>task</code> on the loop thread as soon as possible. This is the only way in which
+     * an Anjay object added to the loop may be safely accessed, e.g. to call {@link
+     * Anjay#notifyChanged notifyChanged()}.
+     *
+     * @param anjay Anjay object passed to the task. The task is not run if the object is not
+     *     served by this loop at the time.
+     * @param task Task to run. Tasks pending when the loop stops are discarded.
+     * @throws IllegalStateException if the loop has stopped.
+     */
+    public void execute(Anjay anjay, Consumer<Anjay> task) {
+        if (stopped) {
+            throw new IllegalStateException("Event loop has stopped");
+        }
+        submit(
+                () -> {
+                    Instance instance = instances.get(anjay);
+                    if (instance == null) {
+                        return;
+                    }
+                    try {
+                        task.accept(anjay);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, "event loop task failed", t);
+                    }
+                    touch(instance);
+                });
+    }
+
+    /** @return Number of Anjay objects served by the loop. */
+    public int size() {
+        return size;
+    }
+
+    private void touch(Instance instance) {
+        if (!instance.touched) {
+            instance.touched = true;
+            touched.add(instance);
+        }
+    }
+
+    private void updateRegistrations(Instance instance) throws IOException {
+        Set<SelectableChannel> sockets = new HashSet<>(instance.anjay.getSockets());
+        for (Iterator<SelectionKey> it = instance.keys.iterator(); it.hasNext(); ) {
+            SelectionKey key = it.next();
+            if (!key.isValid() || !sockets.remove(key.channel())) {
+                key.cancel();
+                it.remove();
+            }
+        }
+        for (SelectableChannel socket : sockets) {
+            if (socket.keyFor(selector) == null) {
+                instance.keys.add(socket.register(selector, SelectionKey.OP_READ, instance));
+            }
+        }
+    }
+
+    private void refresh(Instance instance) throws IOException {
+        long generation = instance.anjay.getSocketsGeneration();
+        if (generation != instance.socketsGeneration) {
+            updateRegistrations(instance);
+            instance.socketsGeneration = generation;
+        }
+
+        byDeadline.remove(instance);
+        long timeToNext = instance.anjay.timeToNextNanos();
+        if (timeToNext >= 0) {
+            instance.deadline = System.nanoTime() + timeToNext;
+            byDeadline.add(instance);
+        } else {
+            instance.deadline = NO_DEADLINE;
+        }
+    }
+
+    private void refreshTouched() {
+        for (Instance instance : touched) {
+            instance.touched = false;
+            try {
+                refresh(instance);
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "failed to update sockets and jobs of Anjay object", t);
+            }
+        }
+        touched.clear();
+    }
+
+    private void runCommands() {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+    }
+
+    private void runDueJobs() {
+        long now = System.nanoTime();
+        while (!byDeadline.isEmpty() && byDeadline.first().deadline - now <= 0) {
+            Instance instance = byDeadline.pollFirst();
+            instance.deadline = NO_DEADLINE;
+            try {
+                instance.anjay.schedRun();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Anjay::schedRun() failed", t);
+            }
+            touch(instance);
+        }
+    }
+
+    private void serveReady() throws IOException {
+        long waitTimeMs = maxWaitTime;
+        if (!byDeadline.isEmpty()) {
+            long untilDeadline = byDeadline.first().deadline - System.nanoTime();
+            // round up, so that the loop does not spin before the deadline
+            waitTimeMs =
+                    Math.min(
+                            waitTimeMs,
+                            TimeUnit.NANOSECONDS.toMillis(
+                                    Math.max(0L, untilDeadline)
+                                            + TimeUnit.MILLISECONDS.toNanos(1L)
+                                            - 1L));
+        }
+        if (!commands.isEmpty() || waitTimeMs <= 0) {
+            selector.selectNow();
+        } else {
+            selector.select(waitTimeMs);
+        }
+        for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+            SelectionKey key = it.next();
+            it.remove();
+            Instance instance = (Instance) key.attachment();
+            try {
+                instance.anjay.serve(key.channel());
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Anjay::serve() failed", t);
+            }
+            touch(instance);
+        }
+    }
+
+    /**
+     * Runs the loop on the current thread, until the thread is interrupted (e.g. by {@link
+     * #interrupt()}), or a fatal error occurs in the loop itself, after which the loop is stopped
+     * for good. Errors from {@link Anjay#serve(SelectableChannel)} and {@link Anjay#schedRun()}
+     * are logged and otherwise ignored.
+     *
+     * @throws IOException thrown by {@link Selector#select(long)} or {@link
+     *     SelectableChannel#register(Selector, int, Object)}.
+     */
+    public synchronized void run() throws IOException {
+        if (stopped) {
+            throw new IllegalStateException("Event loop has stopped");
+        }
+        thread = Thread.currentThread();
+        try {
+            while (!thread.isInterrupted()) {
+                runCommands();
+                runDueJobs();
+                refreshTouched();
+                serveReady();
+                refreshTouched();
+            }
+        } catch (Throwable t) {
+            stop();
+            throw t;
+        } finally {
+            thread = null;
+        }
+    }
+
+    /**
+     * Interrupts the thread on which the event loop is running.
+     *
+     * @throws IllegalStateException if the event loop is not running
+     */
+    public void interrupt() {
+        Thread eventLoopThread = thread;
+        if (eventLoopThread == null) {
+            throw new IllegalStateException();
+        }
+        eventLoopThread.interrupt();
+    }
+
+    /**
+     * Closes the selector. Commands submitted before, e.g. {@link #remove(Anjay)}, are completed, so
+     * this MUST NOT be called while the loop is running. Commands submitted afterwards are handled
+     * as for a stopped loop.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!stopped) {
+            runCommands();
+        }
+        stop();
+        selector.close();
+    }
+}
@@ -24,7 +24,7 @@ import com.avsystem.anjay.AnjayObject;
 import java.nio.channels.SelectableChannel;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -37,12 +37,16 @@ public final class NativeAnjay implements AutoCloseable {
 
     private native NativeSocketEntry[] anjayGetSocketEntries();
 
+    private native long anjayGetSocketsGeneration();
+
     private native void anjayServe(long socketPtr);
 
     private native void anjaySchedRun();
 
     private native Duration anjaySchedTimeToNext();
 
+    private native long anjaySchedTimeToNextNs();
+
     private native int anjayScheduleRegistrationUpdate(int ssid);
 
     private native int anjayScheduleTransportReconnect(NativeTransportSet transportSet);
@@ -61,6 +65,8 @@ public final class NativeAnjay implements AutoCloseable {
 
     private native int anjayNotifyChanged(int oid, int iid, int rid);
 
+    private native int anjayNotifyChangedBatch(int[] oids, int[] iids, int[] rids, int count);
+
     private native int anjayNotifyInstancesChanged(int oid);
 
     private native int anjayRegisterObject(NativeAnjayObject object);
@@ -101,7 +107,9 @@ public final class NativeAnjay implements AutoCloseable {
 
     private long self;
     private final List<SocketEntry> sockets;
-    private final Map<SocketEntry, NativeSocketEntry> nativeSockets;
+    // Native socket pointers of the channels returned by the last getSocketEntries() call. Channels
+    // are compared by identity, so that serve() does not need to iterate over the sockets.
+    private final Map<SelectableChannel, Long> socketPtrs;
 
     void ensureValidState() {
         if (this.self == 0) {
@@ -112,7 +120,7 @@ public final class NativeAnjay implements AutoCloseable {
     public NativeAnjay(Configuration config) {
         init(config);
         this.sockets = new ArrayList<>();
-        this.nativeSockets = new HashMap<>();
+        this.socketPtrs = new IdentityHashMap<>();
     }
 
     @Override
@@ -124,15 +132,20 @@ public final class NativeAnjay implements AutoCloseable {
     public List<SocketEntry> getSocketEntries() {
         ensureValidState();
         this.sockets.clear();
-        this.nativeSockets.clear();
+        this.socketPtrs.clear();
         for (NativeSocketEntry entry : this.anjayGetSocketEntries()) {
             SocketEntry socket = entry.intoSocketEntry();
             this.sockets.add(socket);
-            this.nativeSockets.put(socket, entry);
+            this.socketPtrs.put(socket.channel, entry.getSocketPtr());
         }
         return this.sockets;
     }
 
+    public long getSocketsGeneration() {
+        ensureValidState();
+        return this.anjayGetSocketsGeneration();
+    }
+
     public void schedRun() {
         ensureValidState();
         this.anjaySchedRun();
@@ -140,13 +153,12 @@ public final class NativeAnjay implements AutoCloseable {
 
     public void serve(SelectableChannel channel) {
         ensureValidState();
-        for (SocketEntry entry : this.sockets) {
-            if (entry.channel == channel) {
-                this.anjayServe(this.nativeSockets.get(entry).getSocketPtr());
-                return;
-            }
+        Long socketPtr = this.socketPtrs.get(channel);
+        if (socketPtr == null) {
+            throw new IllegalArgumentException(
+                    "Passed channel does not belong to any known channels");
         }
-        throw new IllegalArgumentException("Passed channel does not belong to any known channels");
+        this.anjayServe(socketPtr);
     }
 
     public Optional<Duration> timeToNext() {
@@ -154,6 +166,11 @@ public final class NativeAnjay implements AutoCloseable {
         return Optional.ofNullable(this.anjaySchedTimeToNext());
     }
 
+    public long timeToNextNanos() {
+        ensureValidState();
+        return this.anjaySchedTimeToNextNs();
+    }
+
     public void scheduleRegistrationUpdate(int ssid) {
         ensureValidState();
         int result = this.anjayScheduleRegistrationUpdate(ssid);
@@ -223,6 +240,17 @@ public final class NativeAnjay implements AutoCloseable {
         }
     }
 
+    public void notifyChangedBatch(int[] oids, int[] iids, int[] rids, int count) {
+        ensureValidState();
+        if (count == 0) {
+            return;
+        }
+        int result = this.anjayNotifyChangedBatch(oids, iids, rids, count);
+        if (result < 0) {
+            throw new AnjayException(result, "anjay_notify_changed() failed");
+        }
+    }
+
     public void notifyInstancesChanged(int oid) {
         ensureValidState();
         int result = this.anjayNotifyInstancesChanged(oid);
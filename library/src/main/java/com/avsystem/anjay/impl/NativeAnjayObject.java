@@ -30,19 +30,12 @@ import java.util.SortedSet;
 
 public final class NativeAnjayObject {
     private final AnjayObject object;
-    private static final Integer[] EMPTY_INSTANCES_ARRAY = new Integer[] {};
-    private static final ResourceDef[] EMPTY_RESOURCES_ARRAY = new ResourceDef[] {};
+    private static final int[] EMPTY_INSTANCES_ARRAY = new int[] {};
 
     private static class IntegerArrayByReference {
         // Used on C++ side.
         @SuppressWarnings("unused")
-        public Integer[] value;
-    }
-
-    private static class ResourceDefArrayByReference {
-        // Used on C++ side.
-        @SuppressWarnings("unused")
-        public ResourceDef[] value;
+        public int[] value;
     }
 
     public static final class ObjectInstanceAttrsByReference {
@@ -57,8 +50,32 @@ public final class NativeAnjayObject {
         public ResourceAttrs value;
     }
 
+    // Reused between resourceRead()/resourceWrite() calls, C++ side binds them to the actual
+    // anjay_*_ctx_t for the duration of each call.
+    private final NativeOutputContext outputContext;
+    private final NativeInputContext inputContext;
+    private final AnjayOutputContext outputContextWrapper;
+    private final AnjayInputContext inputContextWrapper;
+
     public NativeAnjayObject(AnjayObject object) {
         this.object = object;
+        this.outputContext = new NativeOutputContext();
+        this.inputContext = new NativeInputContext();
+        this.outputContextWrapper = new AnjayOutputContext(this.outputContext);
+        this.inputContextWrapper = new AnjayInputContext(this.inputContext);
+    }
+
+    NativeOutputContext outputContext() {
+        return this.outputContext;
+    }
+
+    NativeInputContext inputContext() {
+        return this.inputContext;
+    }
+
+    void closeContexts() {
+        this.outputContext.close();
+        this.inputContext.close();
     }
 
     int oid() {
@@ -69,12 +86,12 @@ public final class NativeAnjayObject {
         return this.object.version();
     }
 
-    int resourceWrite(int iid, int rid, int riid, NativeInputContextPointer ptr) {
-        try (AnjayInputContext wrapper = new AnjayInputContext(ptr)) {
+    int resourceWrite(int iid, int rid, int riid) {
+        try {
             if (riid == Anjay.ID_INVALID) {
-                this.object.resourceWrite(iid, rid, wrapper);
+                this.object.resourceWrite(iid, rid, this.inputContextWrapper);
             } else {
-                this.object.resourceWrite(iid, rid, riid, wrapper);
+                this.object.resourceWrite(iid, rid, riid, this.inputContextWrapper);
             }
             return 0;
         } catch (Throwable t) {
@@ -82,12 +99,12 @@ public final class NativeAnjayObject {
         }
     }
 
-    int resourceRead(int iid, int rid, int riid, NativeOutputContextPointer ptr) {
-        try (AnjayOutputContext wrapper = new AnjayOutputContext(ptr)) {
+    int resourceRead(int iid, int rid, int riid) {
+        try {
             if (riid == Anjay.ID_INVALID) {
-                this.object.resourceRead(iid, rid, wrapper);
+                this.object.resourceRead(iid, rid, this.outputContextWrapper);
             } else {
-                this.object.resourceRead(iid, rid, riid, wrapper);
+                this.object.resourceRead(iid, rid, riid, this.outputContextWrapper);
             }
             return 0;
         } catch (Throwable t) {
@@ -115,25 +132,39 @@ public final class NativeAnjayObject {
 
     int instances(IntegerArrayByReference result) {
         try {
-            SortedSet<Integer> instances = this.object.instances();
-            if (instances == null) {
-                result.value = EMPTY_INSTANCES_ARRAY;
-            } else {
-                result.value = instances.toArray(new Integer[instances.size()]);
-            }
+            int[] instances = this.object.instanceIds();
+            result.value = instances != null ? instances : EMPTY_INSTANCES_ARRAY;
             return 0;
         } catch (Throwable t) {
             return Utils.handleException(t);
         }
     }
 
-    int resources(int iid, ResourceDefArrayByReference result) {
+    long resourcesVersion() {
+        try {
+            return this.object.resourcesVersion();
+        } catch (Throwable t) {
+            Utils.handleException(t);
+            return -1;
+        }
+    }
+
+    // Resources are passed to the C++ side as flat (rid, kind ordinal, present) triples, so that no
+    // per-resource objects have to be inspected through JNI.
+    int resources(int iid, IntegerArrayByReference result) {
         try {
             SortedSet<ResourceDef> resources = this.object.resources(iid);
             if (resources == null) {
-                result.value = EMPTY_RESOURCES_ARRAY;
+                result.value = EMPTY_INSTANCES_ARRAY;
             } else {
-                result.value = resources.toArray(new ResourceDef[resources.size()]);
+                int[] triples = new int[3 * resources.size()];
+                int i = 0;
+                for (ResourceDef def : resources) {
+                    triples[i++] = def.rid;
+                    triples[i++] = def.kind.ordinal();
+                    triples[i++] = def.present ? 1 : 0;
+                }
+                result.value = triples;
             }
             return 0;
         } catch (Throwable t) {
@@ -143,12 +174,8 @@ public final class NativeAnjayObject {
 
     int resourceInstances(int iid, int rid, IntegerArrayByReference result) {
         try {
-            SortedSet<Integer> instances = this.object.resourceInstances(iid, rid);
-            if (instances == null) {
-                result.value = EMPTY_INSTANCES_ARRAY;
-            } else {
-                result.value = instances.toArray(new Integer[instances.size()]);
-            }
+            int[] instances = this.object.resourceInstanceIds(iid, rid);
+            result.value = instances != null ? instances : EMPTY_INSTANCES_ARRAY;
             return 0;
         } catch (Throwable t) {
             return Utils.handleException(t);
@@ -27,7 +27,9 @@ public final class NativeBytesContext implements AutoCloseable {
 
     private native void cleanup();
 
-    private native int anjayRetBytesAppend(byte[] slice, int length);
+    private native int anjayRetBytesAppend(byte[] array, int offset, int length);
+
+    private native int anjayRetBytesAppendDirect(ByteBuffer buffer, int offset, int length);
 
     public NativeBytesContext(NativeBytesContextPointer context, int remaining) {
         init(context);
@@ -35,22 +37,27 @@ public final class NativeBytesContext implements AutoCloseable {
     }
 
     public void append(ByteBuffer buffer) {
-        if (remaining < buffer.remaining()) {
+        int length = buffer.remaining();
+        if (remaining < length) {
             throw new IllegalStateException("Too many bytes passed to bytes context");
         }
-        ByteBuffer slice = buffer.slice();
-        // TODO: is there a better way to do this?
-        byte[] chunk = new byte[Math.min(4096, slice.capacity())];
-        while (slice.hasRemaining()) {
-            int length = Math.min(chunk.length, slice.remaining());
-            slice.get(chunk, 0, length);
-            this.remaining -= length;
-
-            int result = anjayRetBytesAppend(chunk, length);
-            if (result < 0) {
-                throw new AnjayException(result, "anjay_ret_bytes_append() failed");
-            }
+        int result;
+        if (buffer.isDirect()) {
+            result = anjayRetBytesAppendDirect(buffer, buffer.position(), length);
+        } else if (buffer.hasArray()) {
+            result =
+                    anjayRetBytesAppend(
+                            buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            // read-only heap buffer, its backing array is not accessible
+            byte[] array = new byte[length];
+            buffer.slice().get(array);
+            result = anjayRetBytesAppend(array, 0, length);
+        }
+        if (result < 0) {
+            throw new AnjayException(result, "anjay_ret_bytes_append() failed");
         }
+        this.remaining -= length;
     }
 
     @Override
@@ -19,164 +19,129 @@ package com.avsystem.anjay.impl;
 import com.avsystem.anjay.Anjay.Objlnk;
 import com.avsystem.anjay.AnjayException;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.WritableByteChannel;
 
 public final class NativeInputContext implements AutoCloseable {
     private long self;
 
-    private native void init(NativeInputContextPointer context);
+    private native void init();
 
     private native void cleanup();
 
-    private static final class BytesContext {
-        public boolean messageFinished;
-        // NOTE: actually used, on C++ side.
-        @SuppressWarnings("unused")
-        public ByteBuffer slice;
+    private static final int TRANSFER_CHUNK_SIZE = 4096;
 
-        public int bytesRead;
+    // Set in the result of anjayGetBytes*() if the whole value has been read. Lower 32 bits of the
+    // result hold the number of bytes read.
+    private static final long BYTES_MESSAGE_FINISHED = 1L << 32;
 
-        public BytesContext(ByteBuffer slice) {
-            this.messageFinished = false;
-            this.slice = slice;
-            this.bytesRead = 0;
-        }
-    }
+    private native int anjayGetI32();
 
-    private static final class StringContext {
-        public String value;
-    }
+    private native long anjayGetI64();
 
-    private static final class BooleanContext {
-        public boolean value;
-    }
+    private native float anjayGetFloat();
 
-    private static final class IntegerContext {
-        public int value;
-    }
+    private native double anjayGetDouble();
 
-    private static final class LongContext {
-        public long value;
-    }
+    private native boolean anjayGetBool();
 
-    private static final class FloatContext {
-        public float value;
-    }
-
-    private static final class DoubleContext {
-        public double value;
-    }
-
-    private static final class ObjlnkContext {
-        public Objlnk value;
-    }
+    private native String anjayGetString();
 
-    private native int anjayGetBytes(BytesContext bytesContext);
+    private native Objlnk anjayGetObjlnk();
 
-    private native int anjayGetString(StringContext stringContext);
+    private native long anjayGetBytes(byte[] array, int offset, int length);
 
-    private native int anjayGetI32(IntegerContext intContext);
+    private native long anjayGetBytesDirect(ByteBuffer buffer, int offset, int length);
 
-    private native int anjayGetI64(LongContext intContext);
-
-    private native int anjayGetFloat(FloatContext floatContext);
-
-    private native int anjayGetDouble(DoubleContext floatContext);
-
-    private native int anjayGetBool(BooleanContext boolContext);
-
-    private native int anjayGetObjlnk(ObjlnkContext objlnkContext);
-
-    public NativeInputContext(NativeInputContextPointer context) {
-        init(context);
+    public NativeInputContext() {
+        init();
     }
 
     public int getInt() {
-        final IntegerContext context = new IntegerContext();
-        final int result = anjayGetI32(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_i32() failed");
-        }
-        return context.value;
+        return anjayGetI32();
     }
 
     public long getLong() {
-        final LongContext context = new LongContext();
-        final int result = anjayGetI64(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_i64() failed");
-        }
-        return context.value;
+        return anjayGetI64();
     }
 
     public float getFloat() {
-        final FloatContext context = new FloatContext();
-        final int result = anjayGetFloat(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_float() failed");
-        }
-        return context.value;
+        return anjayGetFloat();
     }
 
     public double getDouble() {
-        final DoubleContext context = new DoubleContext();
-        final int result = anjayGetDouble(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_double() failed");
-        }
-        return context.value;
+        return anjayGetDouble();
     }
 
     public boolean getBoolean() {
-        final BooleanContext context = new BooleanContext();
-        final int result = anjayGetBool(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_bool() failed");
-        }
-        return context.value;
+        return anjayGetBool();
     }
 
     public String getString() {
-        final StringContext context = new StringContext();
-        final int result = anjayGetString(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_string() failed");
-        }
-        return context.value;
+        return anjayGetString();
     }
 
     public Objlnk getObjlnk() {
-        final ObjlnkContext context = new ObjlnkContext();
-        final int result = anjayGetObjlnk(context);
-        if (result < 0) {
-            throw new AnjayException(result, "anjay_get_objlnk() failed");
-        }
-        return context.value;
+        return anjayGetObjlnk();
     }
 
     public boolean getBytes(ByteBuffer out) {
         final int position = out.position();
-        final BytesContext context = new BytesContext(out.slice());
-        int result = anjayGetBytes(context);
+        final long result;
+        if (out.isDirect()) {
+            result = anjayGetBytesDirect(out, position, out.remaining());
+        } else if (out.hasArray()) {
+            result = anjayGetBytes(out.array(), out.arrayOffset() + position, out.remaining());
+        } else {
+            throw new ReadOnlyBufferException();
+        }
         if (result < 0) {
-            throw new AnjayException(result, "anjay_get_bytes() failed");
+            throw new AnjayException((int) result, "anjay_get_bytes() failed");
         }
-        out.position(position + context.bytesRead);
-        return context.messageFinished;
+        out.position(position + (int) result);
+        return (result & BYTES_MESSAGE_FINISHED) != 0;
     }
 
     public byte[] getAllBytes() {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
-        ByteBuffer buf = ByteBuffer.allocate(4096);
+        try {
+            transferTo(output);
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throws
+            throw new IllegalStateException(e);
+        }
+        return output.toByteArray();
+    }
 
+    public long transferTo(OutputStream output) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(TRANSFER_CHUNK_SIZE);
+        long transferred = 0;
         boolean finished = false;
         while (!finished) {
             buf.clear();
             finished = this.getBytes(buf);
             output.write(buf.array(), 0, buf.position());
+            transferred += buf.position();
         }
+        return transferred;
+    }
 
-        return output.toByteArray();
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(TRANSFER_CHUNK_SIZE);
+        long transferred = 0;
+        boolean finished = false;
+        while (!finished) {
+            buf.clear();
+            finished = this.getBytes(buf);
+            buf.flip();
+            while (buf.hasRemaining()) {
+                transferred += channel.write(buf);
+            }
+        }
+        return transferred;
     }
 
     @Override
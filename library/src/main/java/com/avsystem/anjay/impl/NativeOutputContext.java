@@ -22,7 +22,7 @@ import com.avsystem.anjay.AnjayException;
 public final class NativeOutputContext implements AutoCloseable {
     private long self;
 
-    private native void init(NativeOutputContextPointer context);
+    private native void init();
 
     private native void cleanup();
 
@@ -42,8 +42,8 @@ public final class NativeOutputContext implements AutoCloseable {
 
     private native NativeBytesContextPointer anjayRetBytesBegin(int length);
 
-    public NativeOutputContext(NativeOutputContextPointer context) {
-        init(context);
+    public NativeOutputContext() {
+        init();
     }
 
     public void retInt(int value) {
@@ -22,7 +22,6 @@ import java.lang.reflect.Field;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.time.Duration;
 
 public final class NativeUtils {
     public static NativeAnjay getNativeAnjay(Anjay anjay) throws Exception {
@@ -33,45 +32,56 @@ public final class NativeUtils {
         return nativeAnjay;
     }
 
-    public static class ReadyState {
-        public boolean read;
-        public boolean write;
-        public boolean connect;
-        public boolean accept;
+    // A Selector is an expensive object (on Linux it's backed by an epoll instance), and sockets
+    // wait for readiness on every send/receive. Each thread keeps one around instead of opening a
+    // fresh one on every call. Channels stay registered with it until they are closed, and their
+    // interest set is cleared after every wait, so that stale keys never get selected.
+    private static final ThreadLocal<Selector> THREAD_SELECTOR = new ThreadLocal<>();
 
-        public ReadyState(boolean read, boolean write, boolean connect, boolean accept) {
-            this.read = read;
-            this.write = write;
-            this.connect = connect;
-            this.accept = accept;
+    private static Selector getThreadSelector() throws IOException {
+        Selector selector = THREAD_SELECTOR.get();
+        if (selector == null || !selector.isOpen()) {
+            selector = Selector.open();
+            THREAD_SELECTOR.set(selector);
         }
+        return selector;
+    }
 
-        public ReadyState() {
-            this(false, false, false, false);
+    private static SelectionKey prepareKey(
+            Selector selector, SelectableChannel channel, int interestOps) throws IOException {
+        SelectionKey key = channel.keyFor(selector);
+        if (key != null && !key.isValid()) {
+            // The key has been cancelled, but is still registered until the next selection
+            // operation - flush it, otherwise register() would throw CancelledKeyException.
+            selector.selectNow();
+            key = null;
+        }
+        if (key == null) {
+            return channel.register(selector, interestOps);
         }
+        key.interestOps(interestOps);
+        return key;
     }
 
-    public static ReadyState waitUntilReady(
-            SelectableChannel channel, Duration timeout, ReadyState waitStates) throws IOException {
-        try (Selector selector = Selector.open()) {
-            int waitMask = 0;
-            if (waitStates.read) {
-                waitMask |= SelectionKey.OP_READ;
-            }
-            if (waitStates.write) {
-                waitMask |= SelectionKey.OP_WRITE;
-            }
-            if (waitStates.connect) {
-                waitMask |= SelectionKey.OP_CONNECT;
-            }
-            if (waitStates.accept) {
-                waitMask |= SelectionKey.OP_ACCEPT;
-            }
-
-            SelectionKey key = channel.register(selector, waitMask);
+    /**
+     * Waits until <code>channel</code> becomes ready for any of the operations specified in
+     * <code>interestOps</code>.
+     *
+     * @param channel Channel to wait on. Must be in non-blocking mode.
+     * @param timeoutNs Maximum time to wait, in nanoseconds.
+     * @param interestOps Bitmask of <code>SelectionKey.OP_*</code> values.
+     * @return Bitmask of <code>SelectionKey.OP_*</code> values the channel is ready for, or 0 if
+     *     the timeout expired.
+     */
+    public static int waitUntilReady(SelectableChannel channel, long timeoutNs, int interestOps)
+            throws IOException {
+        Selector selector = getThreadSelector();
+        selector.selectedKeys().clear();
+        SelectionKey key = prepareKey(selector, channel, interestOps);
+        try {
             // NOTE: Java doesn't seem to have any higher level APIs around monotonic
             // clock... The standard available monotonic time source is System.nanoTime().
-            final long deadlineNs = System.nanoTime() + timeout.toNanos();
+            final long deadlineNs = System.nanoTime() + timeoutNs;
             long remainingMs;
             int readySockets;
             do {
@@ -89,14 +99,15 @@ public final class NativeUtils {
                 }
             } while (readySockets == 0 && remainingMs > 0);
 
-            ReadyState result = new ReadyState();
             if (selector.selectedKeys().contains(key)) {
-                result.read = key.isReadable();
-                result.write = key.isWritable();
-                result.connect = key.isConnectable();
-                result.accept = key.isAcceptable();
+                return key.readyOps();
+            }
+            return 0;
+        } finally {
+            selector.selectedKeys().clear();
+            if (key.isValid()) {
+                key.interestOps(0);
             }
-            return result;
         }
     }
 }
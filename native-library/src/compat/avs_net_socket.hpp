@@ -34,6 +34,8 @@ public:
     virtual jni::Local<jni::Object<utils::SelectableChannel>>
     selectable_channel() const = 0;
 
+    virtual uint64_t channel_generation() const = 0;
+
     virtual void connect(const char *host, const char *port) = 0;
 
     virtual void send(const void *buffer, size_t buffer_length) = 0;
@@ -84,6 +86,10 @@ public:
         return channel_.as_selectable_channel();
     }
 
+    virtual uint64_t channel_generation() const {
+        return channel_.generation();
+    }
+
     virtual void connect(const char *host, const char *port) {
         channel_.connect(host, port);
     }
@@ -32,6 +32,7 @@
 #include "./socket_address.hpp"
 #include "./socket_error.hpp"
 
+#include <cstdint>
 #include <optional>
 
 namespace compat {
@@ -58,6 +59,10 @@ class SocketChannel {
     jni::Global<jni::Object<ChannelTag>> self_;
     avs_time_duration_t timeout_;
     bool is_shutdown_;
+    // Incremented whenever the Java channel is created or closed. A socket may
+    // get a new channel (e.g. when reconnecting) without changing its address,
+    // so this is used to detect such changes.
+    uint64_t generation_;
 
     auto accessor() {
         return utils::AccessorBase<ChannelTag>{ env_, self_ };
@@ -90,9 +95,14 @@ class SocketChannel {
             return AVS_NO_ERROR;
         }
 
-        accessor()
-                .template get_method<jni::jboolean(jni::Object<SocketAddress>)>(
-                        "connect")(resolved_address);
+        if (accessor()
+                    .template get_method<jni::jboolean(
+                            jni::Object<SocketAddress>)>("connect")(
+                            resolved_address)) {
+            // Non-blocking connect() may complete immediately (e.g. when
+            // connecting to a local address), no need to wait then.
+            return AVS_NO_ERROR;
+        }
         utils::NativeUtils::ReadyState wait_state{};
         wait_state.connect = true;
         if (!utils::NativeUtils::wait_until_ready(env_, as_selectable_channel(),
@@ -126,6 +136,7 @@ class SocketChannel {
                         jni::Object<ChannelTag>()>(env_, "open")());
         is_shutdown_ = false;
         configure_blocking(false);
+        ++generation_;
     }
 
     void recreate_if_required() {
@@ -149,18 +160,25 @@ public:
               })),
               self_(),
               timeout_(AVS_NET_SOCKET_DEFAULT_RECV_TIMEOUT),
-              is_shutdown_() {
+              is_shutdown_(),
+              generation_() {
         create();
     }
 
     jni::Local<jni::Object<utils::SelectableChannel>>
     as_selectable_channel() const {
         return jni::Cast<utils::SelectableChannel>(
-                env_, jni::Class<utils::SelectableChannel>::Find(env_), self_);
+                env_, utils::ClassCache<utils::SelectableChannel>::get(env_),
+                self_);
     }
 
     void close() {
         accessor().template get_method<void()>("close")();
+        ++generation_;
+    }
+
+    uint64_t generation() const {
+        return generation_;
     }
 
     void connect(const char *host, const char *port) {
@@ -191,7 +209,22 @@ public:
                                        buffer_length };
         size_t sent_so_far = 0;
 
+        auto write_chunk = [&]() {
+            return accessor()
+                    .template get_method<jni::jint(
+                            jni::Object<utils::ByteBuffer>)>("write")(
+                    byte_buffer.into_java());
+        };
+
         auto try_send_next_chunk = [&]() {
+            // The channel is non-blocking, so let's try writing straight away
+            // and wait for it to become writable only if it didn't accept
+            // anything.
+            jni::jint written = write_chunk();
+            if (written > 0) {
+                return written;
+            }
+
             utils::NativeUtils::ReadyState wait_state{};
             wait_state.write = true;
 
@@ -203,10 +236,7 @@ public:
             if (utils::NativeUtils::wait_until_ready(
                         env_, as_selectable_channel(), timeout, wait_state)
                         .write) {
-                return accessor()
-                        .template get_method<jni::jint(
-                                jni::Object<utils::ByteBuffer>)>("write")(
-                                byte_buffer.into_java());
+                return write_chunk();
             }
             return 0;
         };
@@ -242,27 +272,36 @@ public:
             avs_throw(SocketError(AVS_ENOTCONN,
                                   "Cannot receive() from unconnected socket"));
         }
-        utils::NativeUtils::ReadyState wait_state{};
-        wait_state.read = true;
-
-        if (!utils::NativeUtils::wait_until_ready(env_, as_selectable_channel(),
-                                                  timeout_, wait_state)
-                     .read) {
-            avs_throw(SocketError(AVS_ETIMEDOUT));
-        }
         utils::BufferView byte_buffer{ env_, buffer, buffer_length };
-        try {
-            int read = accessor()
-                               .template get_method<jni::jint(
-                                       jni::Object<utils::ByteBuffer>)>("read")(
-                                       byte_buffer.into_java());
-            // -1 is EOF
-            *out_size = std::max(0, read);
-        } catch (jni::PendingJavaException &) {
-            // Probably the connection is lost.
-            avs_log_and_clear_exception(DEBUG);
-            avs_throw(SocketError(AVS_ECONNREFUSED));
+        auto read_chunk = [&]() {
+            try {
+                return accessor()
+                        .template get_method<jni::jint(
+                                jni::Object<utils::ByteBuffer>)>("read")(
+                                byte_buffer.into_java());
+            } catch (jni::PendingJavaException &) {
+                // Probably the connection is lost.
+                avs_log_and_clear_exception(DEBUG);
+                avs_throw(SocketError(AVS_ECONNREFUSED));
+            }
+        };
+
+        // The channel is non-blocking, so if there is some data available
+        // already, there is no need to wait for it.
+        int read = read_chunk();
+        if (read == 0) {
+            utils::NativeUtils::ReadyState wait_state{};
+            wait_state.read = true;
+
+            if (!utils::NativeUtils::wait_until_ready(
+                         env_, as_selectable_channel(), timeout_, wait_state)
+                         .read) {
+                avs_throw(SocketError(AVS_ETIMEDOUT));
+            }
+            read = read_chunk();
         }
+        // -1 is EOF
+        *out_size = std::max(0, read);
     }
 
     void bind(const char *localaddr, const char *port) {
@@ -30,6 +30,16 @@
 
 #include "./global_context.hpp"
 
+#include "./util_classes/byte_buffer.hpp"
+#include "./util_classes/class_cache.hpp"
+#include "./util_classes/integer_array_by_reference.hpp"
+#include "./util_classes/level.hpp"
+#include "./util_classes/logger.hpp"
+#include "./util_classes/native_anjay_object.hpp"
+#include "./util_classes/native_utils.hpp"
+#include "./util_classes/resource_def.hpp"
+#include "./util_classes/selectable_channel.hpp"
+
 #include <clocale>
 #include <iostream>
 
@@ -39,6 +49,19 @@ extern "C" JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *) try {
     jni::JNIEnv &env{ jni::GetEnv(*vm) };
     GlobalContext::init(vm);
 
+    // Classes used on the hot paths (data model callbacks, sockets, logging)
+    // are resolved upfront, so that the callbacks never need to look them up.
+    // This also makes sure that the library's own classes are found using
+    // the class loader that loaded the library.
+    utils::ClassCache<utils::NativeAnjayObject>::get(env);
+    utils::ClassCache<utils::IntegerArrayByReference>::get(env);
+    utils::ClassCache<utils::ResourceKind>::get(env);
+    utils::ClassCache<utils::NativeUtils>::get(env);
+    utils::ClassCache<utils::SelectableChannel>::get(env);
+    utils::ClassCache<utils::ByteBuffer>::get(env);
+    utils::ClassCache<utils::Logger>::get(env);
+    utils::ClassCache<utils::Level>::get(env);
+
     NativeAnjay::register_native(env);
     NativeInputContext::register_native(env);
     NativeOutputContext::register_native(env);
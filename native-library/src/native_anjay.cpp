@@ -20,8 +20,12 @@
 
 #include "./native_anjay.hpp"
 
+#include "./compat/avs_net_socket.hpp"
 #include "./util_classes/exception.hpp"
 
+#include <algorithm>
+#include <limits>
+
 using namespace std;
 
 NativeAnjay::NativeAnjay(jni::JNIEnv &env,
@@ -29,7 +33,9 @@ NativeAnjay::NativeAnjay(jni::JNIEnv &env,
         : endpoint_name_(),
           udp_tx_params_(ANJAY_COAP_DEFAULT_UDP_TX_PARAMS),
           objects_(),
-          anjay_() {
+          anjay_(),
+          known_sockets_(),
+          sockets_generation_() {
     auto config_accessor = utils::Configuration::Accessor{ env, config };
     auto endpoint_name = config_accessor.get_endpoint_name();
     if (!endpoint_name) {
@@ -94,6 +100,40 @@ NativeAnjay::get_socket_entries(jni::JNIEnv &env) {
     return result;
 }
 
+jni::jlong NativeAnjay::get_sockets_generation(jni::JNIEnv &) {
+    bool changed = false;
+
+    AVS_LIST(const anjay_socket_entry_t) entries =
+            anjay_get_socket_entries(anjay_.get());
+    size_t index = 0;
+    AVS_LIST(const anjay_socket_entry_t) it;
+    AVS_LIST_FOREACH(it, entries) {
+        const compat::AvsSocketBase &backend =
+                *reinterpret_cast<const compat::AvsSocketBase *>(
+                        avs_net_socket_get_system(it->socket));
+        const std::pair<const avs_net_socket_t *, uint64_t> socket{
+            it->socket, backend.channel_generation()
+        };
+        if (index == known_sockets_.size()) {
+            known_sockets_.push_back(socket);
+            changed = true;
+        } else if (known_sockets_[index] != socket) {
+            known_sockets_[index] = socket;
+            changed = true;
+        }
+        ++index;
+    }
+    if (index != known_sockets_.size()) {
+        known_sockets_.resize(index);
+        changed = true;
+    }
+
+    if (changed) {
+        ++sockets_generation_;
+    }
+    return sockets_generation_;
+}
+
 void NativeAnjay::serve(jni::JNIEnv &, jni::jlong socket_ptr) {
     anjay_serve(anjay_.get(), reinterpret_cast<avs_net_socket_t *>(socket_ptr));
 }
@@ -112,6 +152,16 @@ NativeAnjay::get_sched_time_to_next(jni::JNIEnv &env) {
     return utils::Duration::into_java(env, duration);
 }
 
+jni::jlong NativeAnjay::get_sched_time_to_next_ns(jni::JNIEnv &) {
+    avs_time_duration_t duration = AVS_TIME_DURATION_INVALID;
+    int64_t result;
+    if (anjay_sched_time_to_next(anjay_.get(), &duration)
+            || avs_time_duration_to_scalar(&result, AVS_TIME_NS, duration)) {
+        return -1;
+    }
+    return std::max<int64_t>(result, 0);
+}
+
 jni::jint NativeAnjay::schedule_registration_update(jni::JNIEnv &,
                                                     jni::jint ssid) {
     return anjay_schedule_registration_update(anjay_.get(), ssid);
@@ -156,6 +206,46 @@ jni::jint NativeAnjay::notify_changed(jni::JNIEnv &,
     return anjay_notify_changed(anjay_.get(), oid, iid, rid);
 }
 
+jni::jint NativeAnjay::notify_changed_batch(jni::JNIEnv &env,
+                                            const jni::Array<jni::jint> &oids,
+                                            const jni::Array<jni::jint> &iids,
+                                            const jni::Array<jni::jint> &rids,
+                                            jni::jint count) {
+    if (count < 0 || oids.Length(env) < static_cast<jni::jsize>(count)
+            || iids.Length(env) < static_cast<jni::jsize>(count)
+            || rids.Length(env) < static_cast<jni::jsize>(count)) {
+        avs_throw(IllegalArgumentException(env, "invalid batch size: "
+                                                        + to_string(count)));
+    }
+    // Each array is copied with a single JNI call, and all paths are
+    // validated before anything gets scheduled.
+    vector<jni::jint> paths(3 * static_cast<size_t>(count));
+    jni::jint *const oid_values = paths.data();
+    jni::jint *const iid_values = oid_values + count;
+    jni::jint *const rid_values = iid_values + count;
+    jni::GetArrayRegion(env, *oids, 0, count, oid_values);
+    jni::GetArrayRegion(env, *iids, 0, count, iid_values);
+    jni::GetArrayRegion(env, *rids, 0, count, rid_values);
+    for (jni::jint id : paths) {
+        if (id < 0 || id > numeric_limits<uint16_t>::max()) {
+            avs_throw(IllegalArgumentException(
+                    env, "id out of range: " + to_string(id)));
+        }
+    }
+    // anjay_notify_changed() only queues the change; all of them are then
+    // handled by a single notification job, scheduled by the first call.
+    for (jni::jint i = 0; i < count; ++i) {
+        int result = anjay_notify_changed(
+                anjay_.get(), static_cast<anjay_oid_t>(oid_values[i]),
+                static_cast<anjay_iid_t>(iid_values[i]),
+                static_cast<anjay_rid_t>(rid_values[i]));
+        if (result) {
+            return result;
+        }
+    }
+    return 0;
+}
+
 jni::jint NativeAnjay::notify_instances_changed(jni::JNIEnv &, jni::jint oid) {
     return anjay_notify_instances_changed(anjay_.get(), oid);
 }
@@ -222,9 +312,11 @@ void NativeAnjay::register_native(jni::JNIEnv &env) {
             "init",
             "cleanup",
             METHOD(&NativeAnjay::get_socket_entries, "anjayGetSocketEntries"),
+            METHOD(&NativeAnjay::get_sockets_generation, "anjayGetSocketsGeneration"),
             METHOD(&NativeAnjay::serve, "anjayServe"),
             METHOD(&NativeAnjay::sched_run, "anjaySchedRun"),
             METHOD(&NativeAnjay::get_sched_time_to_next, "anjaySchedTimeToNext"),
+            METHOD(&NativeAnjay::get_sched_time_to_next_ns, "anjaySchedTimeToNextNs"),
             METHOD(&NativeAnjay::schedule_registration_update, "anjayScheduleRegistrationUpdate"),
             METHOD(&NativeAnjay::schedule_transport_reconnect, "anjayScheduleTransportReconnect"),
             METHOD(&NativeAnjay::enable_server, "anjayEnableServer"),
@@ -234,6 +326,7 @@ void NativeAnjay::register_native(jni::JNIEnv &env) {
             METHOD(&NativeAnjay::transport_enter_offline, "anjayTransportEnterOffline"),
             METHOD(&NativeAnjay::transport_exit_offline, "anjayTransportExitOffline"),
             METHOD(&NativeAnjay::notify_changed, "anjayNotifyChanged"),
+            METHOD(&NativeAnjay::notify_changed_batch, "anjayNotifyChangedBatch"),
             METHOD(&NativeAnjay::notify_instances_changed, "anjayNotifyInstancesChanged"),
             METHOD(&NativeAnjay::register_object, "anjayRegisterObject"),
             METHOD(&NativeAnjay::has_security_config_for_uri, "anjayHasSecurityConfigForUri")
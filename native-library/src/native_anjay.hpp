@@ -20,6 +20,7 @@
 
 #include <memory>
 #include <string>
+#include <utility>
 #include <vector>
 
 #include <anjay/anjay.h>
@@ -39,6 +40,10 @@ class NativeAnjay {
     avs_coap_udp_tx_params_t udp_tx_params_;
     std::vector<std::unique_ptr<NativeAnjayObjectAdapter>> objects_;
     std::shared_ptr<anjay_t> anjay_;
+    // Sockets seen by the last get_sockets_generation() call, along with the
+    // generations of their Java channels.
+    std::vector<std::pair<const avs_net_socket_t *, uint64_t>> known_sockets_;
+    jni::jlong sockets_generation_;
 
 public:
     static constexpr auto Name() {
@@ -64,6 +69,8 @@ public:
     jni::Local<jni::Array<jni::Object<utils::NativeSocketEntry>>>
     get_socket_entries(jni::JNIEnv &env);
 
+    jni::jlong get_sockets_generation(jni::JNIEnv &);
+
     void serve(jni::JNIEnv &, jni::jlong socket_ptr);
 
     void sched_run(jni::JNIEnv &);
@@ -71,6 +78,8 @@ public:
     jni::Local<jni::Object<utils::Duration>>
     get_sched_time_to_next(jni::JNIEnv &env);
 
+    jni::jlong get_sched_time_to_next_ns(jni::JNIEnv &);
+
     jni::jint schedule_registration_update(jni::JNIEnv &env, jni::jint ssid);
 
     jni::jint schedule_transport_reconnect(
@@ -92,6 +101,12 @@ public:
     jni::jint
     notify_changed(jni::JNIEnv &, jni::jint oid, jni::jint iid, jni::jint rid);
 
+    jni::jint notify_changed_batch(jni::JNIEnv &env,
+                                   const jni::Array<jni::jint> &oids,
+                                   const jni::Array<jni::jint> &iids,
+                                   const jni::Array<jni::jint> &rids,
+                                   jni::jint count);
+
     jni::jint notify_instances_changed(jni::JNIEnv &, jni::jint oid);
 
     jni::jint disable_server(jni::JNIEnv &env, jni::jint ssid);
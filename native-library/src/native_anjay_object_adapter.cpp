@@ -24,7 +24,11 @@ NativeAnjayObjectAdapter::NativeAnjayObjectAdapter(
           def_ptr_(&def_),
           anjay_(anjay),
           accessor_(env, std::move(object)),
-          version_() {
+          version_(),
+          output_context_(accessor_.get_output_context()),
+          input_context_(accessor_.get_input_context()),
+          resources_version_(-1),
+          resources_cache_() {
     def_.oid = accessor_.get_oid();
     version_ = accessor_.get_version();
     def_.version = version_.c_str();
@@ -69,6 +73,11 @@ NativeAnjayObjectAdapter::~NativeAnjayObjectAdapter() {
         // NOTE: this may fail if install() failed, but we don't really care.
         (void) anjay_unregister_object(anjay.get(), &def_ptr_);
     }
+    try {
+        accessor_.close_contexts();
+    } catch (...) {
+        avs_log_and_clear_exception(DEBUG);
+    }
 }
 
 int NativeAnjayObjectAdapter::install() {
@@ -108,11 +117,33 @@ int NativeAnjayObjectAdapter::list_resources(
         anjay_iid_t iid,
         anjay_dm_resource_list_ctx_t *ctx) try {
     auto &self = *get_obj(obj_ptr);
-    return self.accessor_.for_each_resource(iid, [&](utils::ResourceDef def) {
+    jni::jlong version = self.accessor_.get_resources_version();
+    if (version != self.resources_version_) {
+        self.resources_cache_.clear();
+        self.resources_version_ = version;
+    }
+
+    auto cached = self.resources_cache_.find(iid);
+    std::vector<utils::ResourceDef> fetched;
+    if (cached == self.resources_cache_.end()) {
+        int result = self.accessor_.get_resources(iid, fetched);
+        if (result) {
+            return result;
+        }
+        if (version >= 0) {
+            cached = self.resources_cache_.emplace(iid, std::move(fetched))
+                             .first;
+        }
+    }
+
+    const auto &defs =
+            cached != self.resources_cache_.end() ? cached->second : fetched;
+    for (const auto &def : defs) {
         anjay_dm_emit_res(ctx, def.rid, def.kind,
                           def.present ? ANJAY_DM_RES_PRESENT
                                       : ANJAY_DM_RES_ABSENT);
-    });
+    }
+    return 0;
 } catch (...) {
     avs_log_and_clear_exception(DEBUG);
     return -1;
@@ -140,7 +171,10 @@ int NativeAnjayObjectAdapter::resource_read(
         anjay_riid_t riid,
         anjay_output_ctx_t *ctx) try {
     auto &self = *get_obj(obj_ptr);
-    return self.accessor_.resource_read(iid, rid, riid, ctx);
+    ContextBinding<NativeOutputContext, anjay_output_ctx_t> binding{
+        *self.output_context_, ctx
+    };
+    return self.accessor_.resource_read(iid, rid, riid);
 } catch (...) {
     avs_log_and_clear_exception(DEBUG);
     return -1;
@@ -154,7 +188,10 @@ int NativeAnjayObjectAdapter::resource_write(
         anjay_riid_t riid,
         anjay_input_ctx_t *ctx) try {
     auto &self = *get_obj(obj_ptr);
-    return self.accessor_.resource_write(iid, rid, riid, ctx);
+    ContextBinding<NativeInputContext, anjay_input_ctx_t> binding{
+        *self.input_context_, ctx
+    };
+    return self.accessor_.resource_write(iid, rid, riid);
 } catch (...) {
     avs_log_and_clear_exception(DEBUG);
     return -1;
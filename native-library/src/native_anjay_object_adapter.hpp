@@ -23,6 +23,10 @@
 #include "util_classes/native_anjay_object.hpp"
 
 #include <string>
+#include <thread>
+#include <unordered_map>
+#include <utility>
+#include <vector>
 
 class NativeAnjayObjectAdapter {
     anjay_dm_object_def_t def_;
@@ -32,6 +36,40 @@ class NativeAnjayObjectAdapter {
     utils::NativeAnjayObject::Accessor accessor_;
     std::string version_;
 
+    // Contexts passed to resourceRead()/resourceWrite() are reused between
+    // the calls. They are owned by the Java NativeAnjayObject, and are bound
+    // to the actual anjay_*_ctx_t only for the duration of a single call.
+    NativeOutputContext *output_context_;
+    NativeInputContext *input_context_;
+
+    // Resource definitions fetched from Java, valid as long as the object
+    // reports the same, non-negative resourcesVersion().
+    jni::jlong resources_version_;
+    std::unordered_map<anjay_iid_t, std::vector<utils::ResourceDef>>
+            resources_cache_;
+
+    template <typename Context, typename AnjayCtx>
+    class ContextBinding {
+        Context &context_;
+        std::pair<AnjayCtx *, std::thread::id> previous_;
+
+        ContextBinding(const ContextBinding &) = delete;
+        ContextBinding &operator=(const ContextBinding &) = delete;
+
+    public:
+        // The context is usable only by the thread running the handler, so
+        // that it does not race with the handler when used from elsewhere.
+        ContextBinding(Context &context, AnjayCtx *ctx)
+                : context_(context),
+                  previous_(context.bind(ctx, std::this_thread::get_id())) {}
+
+        ~ContextBinding() {
+            // Restoring the previous target (instead of just unbinding the
+            // context) makes nested handler calls work correctly as well.
+            context_.bind(previous_.first, previous_.second);
+        }
+    };
+
     NativeAnjayObjectAdapter(const NativeAnjayObjectAdapter &) = delete;
     NativeAnjayObjectAdapter &
     operator=(const NativeAnjayObjectAdapter &) = delete;
@@ -22,24 +22,48 @@ NativeBytesContext::NativeBytesContext(
         : ctx_(utils::NativeBytesContextPointer::into_native(env, context)) {}
 
 jni::jint NativeBytesContext::append(jni::JNIEnv &env,
-                                     const jni::Array<jni::jbyte> &chunk,
+                                     const jni::Array<jni::jbyte> &array,
+                                     jni::jint offset,
                                      jni::jint length) {
-    std::vector<jni::jbyte> buffer(std::min(length, 4096));
-    size_t start = 0;
+    // NOTE: GetPrimitiveArrayCritical() can't be used here, as
+    // anjay_ret_bytes_append() may end up sending a block of the response,
+    // which calls back into Java. Copying through a stack buffer at least
+    // avoids any allocations.
+    jni::jbyte buffer[4096];
     while (length > 0) {
-        const size_t to_read =
-                std::min(static_cast<size_t>(length), buffer.size());
-        jni::GetArrayRegion(env, *chunk, start, to_read, buffer.data());
-        int result = anjay_ret_bytes_append(ctx_, buffer.data(), to_read);
+        const jni::jint to_read =
+                std::min(length, static_cast<jni::jint>(sizeof(buffer)));
+        jni::GetArrayRegion(env, *array, offset, to_read, buffer);
+        int result = anjay_ret_bytes_append(ctx_, buffer, to_read);
         if (result) {
             return result;
         }
         length -= to_read;
-        start += to_read;
+        offset += to_read;
     }
     return 0;
 }
 
+jni::jint
+NativeBytesContext::append_direct(jni::JNIEnv &env,
+                                  const jni::Object<utils::ByteBuffer> &buffer,
+                                  jni::jint offset,
+                                  jni::jint length) {
+    const char *data = static_cast<const char *>(
+            jni::GetDirectBufferAddress(env, *buffer));
+    if (!data) {
+        avs_throw(IllegalArgumentException(env, "buffer is not direct"));
+    }
+    if (offset < 0 || length < 0
+            || static_cast<jni::jlong>(offset) + length
+                       > jni::GetDirectBufferCapacity(env, *buffer)) {
+        avs_throw(IllegalArgumentException(
+                env, "offset and length exceed buffer capacity"));
+    }
+    return anjay_ret_bytes_append(ctx_, data + offset,
+                                  static_cast<size_t>(length));
+}
+
 void NativeBytesContext::register_native(jni::JNIEnv &env) {
 #define METHOD(MethodPtr, name) \
     jni::MakeNativePeerMethod<decltype(MethodPtr), (MethodPtr)>(name)
@@ -51,7 +75,9 @@ void NativeBytesContext::register_native(jni::JNIEnv &env) {
                           jni::Object<utils::NativeBytesContextPointer> &>,
             "init",
             "cleanup",
-            METHOD(&NativeBytesContext::append, "anjayRetBytesAppend")
+            METHOD(&NativeBytesContext::append, "anjayRetBytesAppend"),
+            METHOD(&NativeBytesContext::append_direct,
+                   "anjayRetBytesAppendDirect")
     );
     // clang-format on
 }
@@ -43,6 +43,12 @@ public:
                        jni::Object<utils::NativeBytesContextPointer> &context);
 
     jni::jint append(jni::JNIEnv &env,
-                     const jni::Array<jni::jbyte> &chunk,
+                     const jni::Array<jni::jbyte> &array,
+                     jni::jint offset,
                      jni::jint length);
+
+    jni::jint append_direct(jni::JNIEnv &env,
+                            const jni::Object<utils::ByteBuffer> &buffer,
+                            jni::jint offset,
+                            jni::jint length);
 };
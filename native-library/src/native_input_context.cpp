@@ -23,92 +23,135 @@
 #include "./util_classes/accessor_base.hpp"
 #include "./util_classes/byte_buffer.hpp"
 
-NativeInputContext::NativeInputContext(
-        jni::JNIEnv &env,
-        jni::Object<utils::NativeInputContextPointer> &context)
-        : ctx_(utils::NativeInputContextPointer::into_native(env, context)) {}
+NativeInputContext::NativeInputContext(jni::JNIEnv &) : ctx_(), thread_() {}
+
+anjay_input_ctx_t *NativeInputContext::get_ctx(jni::JNIEnv &env) {
+    // The thread is checked first, as ctx_ may be modified by the thread the
+    // context is bound for.
+    if (thread_.load(std::memory_order_relaxed) != std::this_thread::get_id()
+            || !ctx_) {
+        avs_throw(IllegalStateException(
+                env, "Attempted to use AnjayInputContext outside of the "
+                     "handler it was passed to, or from another thread"));
+    }
+    return ctx_;
+}
 
-jni::jint
-NativeInputContext::get_i32(jni::JNIEnv &env,
-                            jni::Object<details::InputCtx<int32_t>> &ctx) {
-    return get_value<int32_t>(env, ctx, &anjay_get_i32);
+jni::jint NativeInputContext::get_i32(jni::JNIEnv &env) {
+    return get_value<int32_t>(env, "anjay_get_i32", &anjay_get_i32);
 }
 
-jni::jint
-NativeInputContext::get_i64(jni::JNIEnv &env,
-                            jni::Object<details::InputCtx<int64_t>> &ctx) {
-    return get_value<int64_t>(env, ctx, &anjay_get_i64);
+jni::jlong NativeInputContext::get_i64(jni::JNIEnv &env) {
+    return get_value<int64_t>(env, "anjay_get_i64", &anjay_get_i64);
 }
 
-jni::jint
-NativeInputContext::get_bool(jni::JNIEnv &env,
-                             jni::Object<details::InputCtx<bool>> &ctx) {
-    return get_value<bool>(env, ctx, &anjay_get_bool);
+jni::jboolean NativeInputContext::get_bool(jni::JNIEnv &env) {
+    return static_cast<jni::jboolean>(
+            get_value<bool>(env, "anjay_get_bool", &anjay_get_bool));
 }
 
-jni::jint
-NativeInputContext::get_float(jni::JNIEnv &env,
-                              jni::Object<details::InputCtx<float>> &ctx) {
-    return get_value<float>(env, ctx, &anjay_get_float);
+jni::jfloat NativeInputContext::get_float(jni::JNIEnv &env) {
+    return get_value<float>(env, "anjay_get_float", &anjay_get_float);
 }
 
-jni::jint
-NativeInputContext::get_double(jni::JNIEnv &env,
-                               jni::Object<details::InputCtx<double>> &ctx) {
-    return get_value<double>(env, ctx, &anjay_get_double);
+jni::jdouble NativeInputContext::get_double(jni::JNIEnv &env) {
+    return get_value<double>(env, "anjay_get_double", &anjay_get_double);
 }
 
-jni::jint NativeInputContext::get_string(
-        jni::JNIEnv &env, jni::Object<details::InputCtx<std::string>> &ctx) {
-    return get_value<std::string>(env, ctx, [&](auto *ctx, auto *out_value) {
-        int result;
-        do {
-            char chunk[1024];
-            result = anjay_get_string(ctx, chunk, sizeof(chunk));
-            if (result >= 0) {
-                out_value->append(chunk);
-            }
-        } while (result == ANJAY_BUFFER_TOO_SHORT);
-        return result;
-    });
+jni::Local<jni::String> NativeInputContext::get_string(jni::JNIEnv &env) {
+    auto value = get_value<std::string>(
+            env, "anjay_get_string", [&](auto *ctx, auto *out_value) {
+                int result;
+                do {
+                    char chunk[1024];
+                    result = anjay_get_string(ctx, chunk, sizeof(chunk));
+                    if (result >= 0) {
+                        out_value->append(chunk);
+                    }
+                } while (result == ANJAY_BUFFER_TOO_SHORT);
+                return result;
+            });
+    return jni::Make<jni::String>(env, value);
 }
 
-jni::jint NativeInputContext::get_objlnk(
-        jni::JNIEnv &env, jni::Object<details::InputCtx<utils::Objlnk>> &ctx) {
-    return get_value<utils::Objlnk>(env, ctx, [&](auto *ctx, auto *out_value) {
-        return anjay_get_objlnk(ctx, &out_value->oid, &out_value->iid);
-    });
+jni::Local<jni::Object<utils::Objlnk>>
+NativeInputContext::get_objlnk(jni::JNIEnv &env) {
+    return get_value<utils::Objlnk>(
+                   env, "anjay_get_objlnk",
+                   [&](auto *ctx, auto *out_value) {
+                       return anjay_get_objlnk(ctx, &out_value->oid,
+                                               &out_value->iid);
+                   })
+            .into_object(env);
+}
+
+namespace {
+
+// Result of anjay_get_bytes() is passed to Java as a single jlong: the number
+// of bytes read in the lower 32 bits and the "message finished" flag in the
+// bit 32. Negative values are error codes.
+jni::jlong pack_bytes_result(size_t bytes_read, bool message_finished) {
+    return static_cast<jni::jlong>(bytes_read)
+           | (message_finished ? jni::jlong{ 1 } << 32 : 0);
 }
 
-jni::jint
-NativeInputContext::get_bytes(jni::JNIEnv &env,
-                              jni::Object<details::InputCtx<uint8_t[]>> &ctx) {
-    auto context_accessor =
-            utils::AccessorBase<details::InputCtx<uint8_t[]>>{ env, ctx };
-    auto slice = utils::ByteBuffer(
-            env, context_accessor.get_value<jni::Object<utils::ByteBuffer>>(
-                         "slice"));
-    size_t capacity = slice.capacity();
+} // namespace
+
+jni::jlong NativeInputContext::get_bytes(jni::JNIEnv &env,
+                                         const jni::Array<jni::jbyte> &array,
+                                         jni::jint offset,
+                                         jni::jint length) {
+    jni::jbyte buffer[4096];
     size_t bytes_read = 0;
     bool message_finished = false;
-    std::vector<jni::jbyte> buffer(
-            std::min(capacity, static_cast<size_t>(4096)));
 
-    while (capacity > 0 && !message_finished) {
+    while (length > 0 && !message_finished) {
+        size_t chunk_bytes_read;
+        int result = anjay_get_bytes(
+                get_ctx(env), &chunk_bytes_read, &message_finished, buffer,
+                std::min(static_cast<size_t>(length), sizeof(buffer)));
+        if (result < 0) {
+            return result;
+        }
+        jni::SetArrayRegion(env, *array, offset,
+                            static_cast<jni::jsize>(chunk_bytes_read), buffer);
+        offset += static_cast<jni::jint>(chunk_bytes_read);
+        length -= static_cast<jni::jint>(chunk_bytes_read);
+        bytes_read += chunk_bytes_read;
+    }
+    return pack_bytes_result(bytes_read, message_finished);
+}
+
+jni::jlong NativeInputContext::get_bytes_direct(
+        jni::JNIEnv &env,
+        const jni::Object<utils::ByteBuffer> &buffer,
+        jni::jint offset,
+        jni::jint length) {
+    char *data = static_cast<char *>(jni::GetDirectBufferAddress(env, *buffer));
+    if (!data) {
+        avs_throw(IllegalArgumentException(env, "buffer is not direct"));
+    }
+    if (offset < 0 || length < 0
+            || static_cast<jni::jlong>(offset) + length
+                       > jni::GetDirectBufferCapacity(env, *buffer)) {
+        avs_throw(IllegalArgumentException(
+                env, "offset and length exceed buffer capacity"));
+    }
+
+    size_t bytes_read = 0;
+    bool message_finished = false;
+    while (bytes_read < static_cast<size_t>(length) && !message_finished) {
         size_t chunk_bytes_read;
-        int result = anjay_get_bytes(ctx_, &chunk_bytes_read, &message_finished,
-                                     buffer.data(),
-                                     std::min(buffer.size(), capacity));
+        int result =
+                anjay_get_bytes(get_ctx(env), &chunk_bytes_read,
+                                &message_finished, data + offset + bytes_read,
+                                static_cast<size_t>(length) - bytes_read);
         if (result < 0) {
             return result;
         }
-        capacity -= chunk_bytes_read;
         bytes_read += chunk_bytes_read;
-        slice.put(buffer);
     }
-    context_accessor.set_value<int>("bytesRead", static_cast<int>(bytes_read));
-    context_accessor.set_value<bool>("messageFinished", message_finished);
-    return 0;
+    return pack_bytes_result(bytes_read, message_finished);
 }
 
 void NativeInputContext::register_native(jni::JNIEnv &env) {
@@ -118,7 +161,7 @@ void NativeInputContext::register_native(jni::JNIEnv &env) {
     // clang-format off
     jni::RegisterNativePeer<NativeInputContext>(
             env, jni::Class<NativeInputContext>::Find(env), "self",
-            jni::MakePeer<NativeInputContext, jni::Object<utils::NativeInputContextPointer> &>,
+            jni::MakePeer<NativeInputContext>,
             "init",
             "cleanup",
             METHOD(&NativeInputContext::get_i32, "anjayGetI32"),
@@ -128,7 +171,8 @@ void NativeInputContext::register_native(jni::JNIEnv &env) {
             METHOD(&NativeInputContext::get_double, "anjayGetDouble"),
             METHOD(&NativeInputContext::get_string, "anjayGetString"),
             METHOD(&NativeInputContext::get_objlnk, "anjayGetObjlnk"),
-            METHOD(&NativeInputContext::get_bytes, "anjayGetBytes")
+            METHOD(&NativeInputContext::get_bytes, "anjayGetBytes"),
+            METHOD(&NativeInputContext::get_bytes_direct, "anjayGetBytesDirect")
     );
     // clang-format on
 }
@@ -20,87 +20,32 @@
 
 #include "./jni_wrapper.hpp"
 
+#include <atomic>
+#include <thread>
+#include <utility>
+
 #include "./util_classes/accessor_base.hpp"
-#include "./util_classes/native_input_context_pointer.hpp"
+#include "./util_classes/byte_buffer.hpp"
 #include "./util_classes/objlnk.hpp"
 
-namespace details {
-template <typename T>
-struct InputCtx;
-
-template <>
-struct InputCtx<int32_t> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$IntegerContext";
-    }
-};
-
-template <>
-struct InputCtx<int64_t> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$LongContext";
-    }
-};
-
-template <>
-struct InputCtx<bool> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$BooleanContext";
-    }
-};
-
-template <>
-struct InputCtx<float> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$FloatContext";
-    }
-};
-
-template <>
-struct InputCtx<double> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$DoubleContext";
-    }
-};
-
-template <>
-struct InputCtx<std::string> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$StringContext";
-    }
-};
-
-template <>
-struct InputCtx<utils::Objlnk> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$ObjlnkContext";
-    }
-};
-
-template <>
-struct InputCtx<uint8_t[]> {
-    static constexpr auto Name() {
-        return "com/avsystem/anjay/impl/NativeInputContext$BytesContext";
-    }
-};
-
-} // namespace details
-
 class NativeInputContext {
-    anjay_input_ctx_t *ctx_;
+    %s *ctx_;
+    // Thread running the handler the context is bound for. Only that thread
+    // may use the context, and only that thread modifies ctx_.
+    std::atomic<std::thread::id> thread_;
+
+    anjay_input_ctx_t *get_ctx(jni::JNIEnv &env);
 
     template <typename T, typename Getter>
-    int get_value(jni::JNIEnv &env,
-                  jni::Object<details::InputCtx<T>> &ctx,
-                  Getter &&getter) {
-        T value;
-        int result = getter(ctx_, &value);
-        if (result) {
-            return result;
+    T get_value(jni::JNIEnv &env, const char *getter_name, Getter &&getter) {
+        T value{};
+        int result = getter(get_ctx(env), &value);
+        if (result < 0) {
+            avs_throw(AnjayException(env, result,
+                                     std::string{ getter_name }
+                                             + "() failed"));
         }
-        auto accessor = utils::AccessorBase<details::InputCtx<T>>{ env, ctx };
-        accessor.template set_value<T>("value", value);
-        return 0;
+        return value;
     }
 
     NativeInputContext(const NativeInputContext &) = delete;
@@ -116,23 +61,44 @@ public:
 
     static void register_native(jni::JNIEnv &env);
 
-    NativeInputContext(jni::JNIEnv &env,
-                       jni::Object<utils::NativeInputContextPointer> &context);
-
-    jni::jint get_i32(jni::JNIEnv &env,
-                      jni::Object<details::InputCtx<int32_t>> &ctx);
-    jni::jint get_i64(jni::JNIEnv &env,
-                      jni::Object<details::InputCtx<int64_t>> &ctx);
-    jni::jint get_bool(jni::JNIEnv &env,
-                       jni::Object<details::InputCtx<bool>> &ctx);
-    jni::jint get_float(jni::JNIEnv &env,
-                        jni::Object<details::InputCtx<float>> &ctx);
-    jni::jint get_double(jni::JNIEnv &env,
-                         jni::Object<details::InputCtx<double>> &ctx);
-    jni::jint get_string(jni::JNIEnv &env,
-                         jni::Object<details::InputCtx<std::string>> &ctx);
-    jni::jint get_objlnk(jni::JNIEnv &env,
-                         jni::Object<details::InputCtx<utils::Objlnk>> &ctx);
-    jni::jint get_bytes(jni::JNIEnv &env,
-                        jni::Object<details::InputCtx<uint8_t[]>> &ctx);
+    static NativeInputContext *
+    into_native(jni::JNIEnv &env,
+                const jni::Object<NativeInputContext> &context) {
+        auto accessor = utils::AccessorBase<NativeInputContext>{ env, context };
+        return reinterpret_cast<NativeInputContext *>(
+                accessor.get_value<jni::jlong>("self"));
+    }
+
+    explicit NativeInputContext(jni::JNIEnv &env);
+
+    /**
+     * Retargets the context at @p ctx, to be used on @p thread only. @p ctx
+     * may be NULL to make the context unusable. Returns the previous target
+     * and thread.
+     */
+    std::pair<anjay_input_ctx_t *, std::thread::id>
+    bind(anjay_input_ctx_t *ctx, std::thread::id thread) {
+        std::pair<anjay_input_ctx_t *, std::thread::id> previous{
+            ctx_, thread_.load(std::memory_order_relaxed)
+        };
+        ctx_ = ctx;
+        thread_.store(thread, std::memory_order_relaxed);
+        return previous;
+    }
+
+    jni::jint get_i32(jni::JNIEnv &env);
+    jni::jlong get_i64(jni::JNIEnv &env);
+    jni::jboolean get_bool(jni::JNIEnv &env);
+    jni::jfloat get_float(jni::JNIEnv &env);
+    jni::jdouble get_double(jni::JNIEnv &env);
+    jni::Local<jni::String> get_string(jni::JNIEnv &env);
+    jni::Local<jni::Object<utils::Objlnk>> get_objlnk(jni::JNIEnv &env);
+    jni::jlong get_bytes(jni::JNIEnv &env,
+                         const jni::Array<jni::jbyte> &array,
+                         jni::jint offset,
+                         jni::jint length);
+    jni::jlong get_bytes_direct(jni::JNIEnv &env,
+                                const jni::Object<utils::ByteBuffer> &buffer,
+                                jni::jint offset,
+                                jni::jint length);
 };
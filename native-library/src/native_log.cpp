@@ -31,11 +31,12 @@ void NativeLog::log_handler(avs_log_level_t level,
                     jni::Object<utils::Logger>(jni::String)>(*env, "getLogger")(
                     jni::Make<jni::String>(*env, java_module));
 
-            auto accessor = utils::AccessorBase<utils::Logger>{ *env, logger };
-
-            accessor.get_method<void(jni::Object<utils::Level>, jni::String)>(
-                    "log")(utils::Level::from_native(*env, level),
-                           jni::Make<jni::String>(*env, message));
+            logger.Call(*env,
+                        utils::ClassCache<utils::Logger>::method<void(
+                                jni::Object<utils::Level>, jni::String)>(
+                                *env, "log"),
+                        utils::Level::from_native(*env, level),
+                        jni::Make<jni::String>(*env, message));
         } catch (jni::PendingJavaException &) {
             jni::ExceptionClear(*env);
             throw;
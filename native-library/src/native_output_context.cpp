@@ -16,48 +16,59 @@
 
 #include "./native_output_context.hpp"
 
-NativeOutputContext::NativeOutputContext(
-        jni::JNIEnv &env,
-        jni::Object<utils::NativeOutputContextPointer> &context)
-        : ctx_(utils::NativeOutputContextPointer::into_native(env, context)) {}
+NativeOutputContext::NativeOutputContext(jni::JNIEnv &) : ctx_(), thread_() {}
 
-jni::jint NativeOutputContext::ret_i32(jni::JNIEnv &, jni::jint value) {
-    return anjay_ret_i32(ctx_, value);
+anjay_output_ctx_t *NativeOutputContext::get_ctx(jni::JNIEnv &env) {
+    // The thread is checked first, as ctx_ may be modified by the thread the
+    // context is bound for.
+    if (thread_.load(std::memory_order_relaxed) != std::this_thread::get_id()
+            || !ctx_) {
+        avs_throw(IllegalStateException(
+                env, "Attempted to use AnjayOutputContext outside of the "
+                     "handler it was passed to, or from another thread"));
+    }
+    return ctx_;
 }
 
-jni::jint NativeOutputContext::ret_i64(jni::JNIEnv &, jni::jlong value) {
-    return anjay_ret_i64(ctx_, value);
+jni::jint NativeOutputContext::ret_i32(jni::JNIEnv &env, jni::jint value) {
+    return anjay_ret_i32(get_ctx(env), value);
 }
 
-jni::jint NativeOutputContext::ret_bool(jni::JNIEnv &, jni::jboolean value) {
-    return anjay_ret_bool(ctx_, value);
+jni::jint NativeOutputContext::ret_i64(jni::JNIEnv &env, jni::jlong value) {
+    return anjay_ret_i64(get_ctx(env), value);
 }
 
-jni::jint NativeOutputContext::ret_float(jni::JNIEnv &, jni::jfloat value) {
-    return anjay_ret_float(ctx_, value);
+jni::jint NativeOutputContext::ret_bool(jni::JNIEnv &env,
+                                        jni::jboolean value) {
+    return anjay_ret_bool(get_ctx(env), value);
 }
 
-jni::jint NativeOutputContext::ret_double(jni::JNIEnv &, jni::jdouble value) {
-    return anjay_ret_double(ctx_, value);
+jni::jint NativeOutputContext::ret_float(jni::JNIEnv &env, jni::jfloat value) {
+    return anjay_ret_float(get_ctx(env), value);
+}
+
+jni::jint NativeOutputContext::ret_double(jni::JNIEnv &env,
+                                          jni::jdouble value) {
+    return anjay_ret_double(get_ctx(env), value);
 }
 
 jni::jint NativeOutputContext::ret_string(jni::JNIEnv &env,
                                           const jni::String &value) {
     auto str = jni::Make<std::string>(env, value);
-    return anjay_ret_string(ctx_, str.c_str());
+    return anjay_ret_string(get_ctx(env), str.c_str());
 }
 
 jni::jint
 NativeOutputContext::ret_objlnk(jni::JNIEnv &env,
                                 const jni::Object<utils::Objlnk> &value) {
     auto objlnk = utils::Objlnk::into_native(env, value);
-    return anjay_ret_objlnk(ctx_, objlnk.oid, objlnk.iid);
+    return anjay_ret_objlnk(get_ctx(env), objlnk.oid, objlnk.iid);
 }
 
 jni::Local<jni::Object<utils::NativeBytesContextPointer>>
 NativeOutputContext::ret_bytes_begin(jni::JNIEnv &env, jni::jint length) {
     return utils::NativeBytesContextPointer::into_object(
-            env, anjay_ret_bytes_begin(ctx_, length));
+            env, anjay_ret_bytes_begin(get_ctx(env), length));
 }
 
 void NativeOutputContext::register_native(jni::JNIEnv &env) {
@@ -67,8 +78,7 @@ void NativeOutputContext::register_native(jni::JNIEnv &env) {
     // clang-format off
     jni::RegisterNativePeer<NativeOutputContext>(
             env, jni::Class<NativeOutputContext>::Find(env), "self",
-            jni::MakePeer<NativeOutputContext,
-                          jni::Object<utils::NativeOutputContextPointer> &>,
+            jni::MakePeer<NativeOutputContext>,
             "init",
             "cleanup",
             METHOD(&NativeOutputContext::ret_i32, "anjayRetI32"),
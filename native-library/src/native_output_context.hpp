@@ -20,14 +20,22 @@
 
 #include "./jni_wrapper.hpp"
 
+#include <atomic>
+#include <thread>
+#include <utility>
+
 #include "./util_classes/accessor_base.hpp"
 #include "./util_classes/byte_buffer.hpp"
 #include "./util_classes/native_bytes_context_pointer.hpp"
-#include "./util_classes/native_output_context_pointer.hpp"
 #include "./util_classes/objlnk.hpp"
 
 class NativeOutputContext {
-    anjay_output_ctx_t *ctx_;
+    %s *ctx_;
+    // Thread running the handler the context is bound for. Only that thread
+    // may use the context, and only that thread modifies ctx_.
+    std::atomic<std::thread::id> thread_;
+
+    anjay_output_ctx_t *get_ctx(jni::JNIEnv &env);
 
     NativeOutputContext(const NativeOutputContext &) = delete;
     NativeOutputContext &operator=(const NativeOutputContext &) = delete;
@@ -42,15 +50,36 @@ public:
 
     static void register_native(jni::JNIEnv &env);
 
-    NativeOutputContext(
-            jni::JNIEnv &env,
-            jni::Object<utils::NativeOutputContextPointer> &context);
+    static NativeOutputContext *
+    into_native(jni::JNIEnv &env,
+                const jni::Object<NativeOutputContext> &context) {
+        auto accessor = utils::AccessorBase<NativeOutputContext>{ env, context };
+        return reinterpret_cast<NativeOutputContext *>(
+                accessor.get_value<jni::jlong>("self"));
+    }
+
+    explicit NativeOutputContext(jni::JNIEnv &env);
+
+    /**
+     * Retargets the context at @p ctx, to be used on @p thread only. @p ctx
+     * may be NULL to make the context unusable. Returns the previous target
+     * and thread.
+     */
+    std::pair<anjay_output_ctx_t *, std::thread::id>
+    bind(anjay_output_ctx_t *ctx, std::thread::id thread) {
+        std::pair<anjay_output_ctx_t *, std::thread::id> previous{
+            ctx_, thread_.load(std::memory_order_relaxed)
+        };
+        ctx_ = ctx;
+        thread_.store(thread, std::memory_order_relaxed);
+        return previous;
+    }
 
-    jni::jint ret_i32(jni::JNIEnv &, jni::jint value);
-    jni::jint ret_i64(jni::JNIEnv &, jni::jlong value);
-    jni::jint ret_bool(jni::JNIEnv &, jni::jboolean value);
-    jni::jint ret_float(jni::JNIEnv &, jni::jfloat value);
-    jni::jint ret_double(jni::JNIEnv &, jni::jdouble value);
+    jni::jint ret_i32(jni::JNIEnv &env, jni::jint value);
+    jni::jint ret_i64(jni::JNIEnv &env, jni::jlong value);
+    jni::jint ret_bool(jni::JNIEnv &env, jni::jboolean value);
+    jni::jint ret_float(jni::JNIEnv &env, jni::jfloat value);
+    jni::jint ret_double(jni::JNIEnv &env, jni::jdouble value);
     jni::jint ret_string(jni::JNIEnv &env, const jni::String &value);
     jni::jint ret_objlnk(jni::JNIEnv &env,
                          const jni::Object<utils::Objlnk> &value);
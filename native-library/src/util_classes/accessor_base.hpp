@@ -23,6 +23,7 @@
 #include <type_traits>
 #include <unordered_map>
 
+#include "./class_cache.hpp"
 #include "./exception.hpp"
 #include "./optional_tag.hpp"
 
@@ -48,20 +49,20 @@ class AccessorBase {
 protected:
     jni::JNIEnv &env_;
     jni::Global<jni::Object<Peer>> instance_;
-    jni::Global<jni::Class<Peer>> class_;
 
     AccessorBase(AccessorBase &) = delete;
     AccessorBase &operator=(AccessorBase &) = delete;
 
     template <typename JType>
     auto get_impl(const char *field_name) {
-        return instance_.Get(env_,
-                             class_.template GetField<JType>(env_, field_name));
+        return instance_.Get(
+                env_, ClassCache<Peer>::template field<JType>(env_, field_name));
     }
 
     template <typename JType, typename T>
     void set_impl(const char *field_name, const T &value) {
-        instance_.Set(env_, class_.template GetField<JType>(env_, field_name),
+        instance_.Set(env_,
+                      ClassCache<Peer>::template field<JType>(env_, field_name),
                       value);
     }
 
@@ -76,23 +77,21 @@ protected:
     template <typename R, typename... Args>
     static auto
     get_static_method_impl(jni::JNIEnv &env,
-                           jni::Local<jni::Class<Peer>> &&clazz,
+                           const jni::Class<Peer> &clazz,
                            jni::StaticMethod<Peer, R(Args...)> &&method) {
-        return [&, clazz = std::move(clazz),
-                method = std::move(method)](const Args &... args) {
+        return [&, method = std::move(method)](const Args &... args) {
             return clazz.Call(env, method, args...);
         };
     }
 
 public:
-    // NOTE: We promote instance as well as the class found through the
-    // environment to global-references because local references are only
-    // valid in the frame of execution of a native JNI method, and sometimes
-    // we need to extend accessor's lifetime.
+    // NOTE: We promote instance to a global reference because local
+    // references are only valid in the frame of execution of a native JNI
+    // method, and sometimes we need to extend accessor's lifetime. The class,
+    // as well as all method and field IDs, come from ClassCache, which
+    // already keeps them for the lifetime of the library.
     explicit AccessorBase(jni::JNIEnv &env, const jni::Object<Peer> &instance)
-            : env_(env),
-              instance_(jni::NewGlobal(env, instance)),
-              class_(jni::NewGlobal(env, jni::Class<Peer>::Find(env))) {}
+            : env_(env), instance_(jni::NewGlobal(env, instance)) {}
 
     jni::JNIEnv &get_env() {
         return env_;
@@ -101,14 +100,15 @@ public:
     template <typename Signature>
     auto get_method(const char *name) {
         return get_method_impl(
-                class_.template GetMethod<Signature>(env_, name));
+                ClassCache<Peer>::template method<Signature>(env_, name));
     }
 
     template <typename Signature>
     static auto get_static_method(jni::JNIEnv &env, const char *name) {
-        auto clazz = jni::Class<Peer>::Find(env);
-        auto method = clazz.template GetStaticMethod<Signature>(env, name);
-        return get_static_method_impl(env, std::move(clazz), std::move(method));
+        return get_static_method_impl(
+                env, ClassCache<Peer>::get(env),
+                ClassCache<Peer>::template static_method<Signature>(env,
+                                                                    name));
     }
 
     template <typename T>
@@ -172,7 +172,7 @@ public:
                     accessor.template get_method<jni::Object<>()>("get")();
 
             jni::Local<jni::Array<T>> casted{
-                env_, jni::Cast(env_, jni::Class<jni::ArrayTag<T>>::Find(env_),
+                env_, jni::Cast(env_, ClassCache<jni::ArrayTag<T>>::get(env_),
                                 object)
                               .release()
             };
@@ -250,7 +250,7 @@ public:
             return std::optional<jni::Local<jni::Object<T>>>{};
         }
         auto value = accessor.template get_method<jni::Object<>()>("get")();
-        auto casted = jni::Cast(env_, jni::Class<T>::Find(env_), value);
+        auto casted = jni::Cast(env_, ClassCache<T>::get(env_), value);
         return std::make_optional(std::move(casted));
     }
 
@@ -265,7 +265,7 @@ public:
         };
         auto field_value = get_value<jni::Object<JavaT>>(field_name);
         if (!jni::IsInstanceOf(env_, field_value.get(),
-                               *jni::Class<Enum>::Find(env_))) {
+                               *ClassCache<Enum>::get(env_))) {
             avs_throw(ClassCastException(env_,
                                          "Field " + std::string{ field_name }
                                                  + " is not a Java Enum"));
@@ -29,9 +29,15 @@ class ByteBuffer {
     jni::JNIEnv &env_;
     jni::Global<jni::Object<ByteBuffer>> self_;
 
+    template <typename Signature, typename... Args>
+    auto call(const char *name, const Args &... args) {
+        return self_.Call(env_,
+                          ClassCache<ByteBuffer>::method<Signature>(env_, name),
+                          args...);
+    }
+
     bool is_direct() {
-        return utils::AccessorBase<ByteBuffer>{ env_, self_ }
-                .get_method<jni::jboolean()>("isDirect")();
+        return call<jni::jboolean()>("isDirect");
     }
 
 public:
@@ -59,20 +65,16 @@ public:
     }
 
     void put(const std::vector<jni::jbyte> &data) {
-        auto accessor = utils::AccessorBase<ByteBuffer>{ env_, self_ };
-        auto appender = accessor.get_method<jni::Object<ByteBuffer>(
-                jni::Array<jni::jbyte>)>("put");
-        appender(jni::Make<jni::Array<jni::jbyte>>(env_, data));
+        call<jni::Object<ByteBuffer>(jni::Array<jni::jbyte>)>(
+                "put", jni::Make<jni::Array<jni::jbyte>>(env_, data));
     }
 
     size_t capacity() {
-        return utils::AccessorBase<ByteBuffer>{ env_, self_ }
-                .get_method<jni::jint()>("capacity")();
+        return call<jni::jint()>("capacity");
     }
 
     size_t remaining() {
-        return utils::AccessorBase<ByteBuffer>{ env_, self_ }
-                .get_method<jni::jint()>("remaining")();
+        return call<jni::jint()>("remaining");
     }
 
     void rewind() {
@@ -81,8 +83,7 @@ public:
                 return "java/nio/Buffer";
             }
         };
-        utils::AccessorBase<ByteBuffer>{ env_, self_ }
-                .get_method<jni::Object<Buffer>()>("rewind")();
+        call<jni::Object<Buffer>()>("rewind");
     }
 
     size_t copy_to(void *data, size_t size) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020-2021 AVSystem <avsystem@avsystem.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#pragma once
+
+#include "../jni_wrapper.hpp"
+
+#include <atomic>
+#include <memory>
+#include <mutex>
+#include <string>
+#include <vector>
+
+namespace utils {
+
+namespace detail {
+
+/**
+ * Cache of members of a single kind and signature, which are few, so they are
+ * looked up by comparing names, without hashing or building strings. The
+ * entries are published as immutable snapshots, replaced as a whole when a
+ * member is added, so lookups of already cached members do not lock.
+ */
+template <typename Member>
+class MemberCache {
+    struct Entry {
+        std::string name;
+        Member member;
+    };
+    typedef std::vector<Entry> Entries;
+
+    std::atomic<const Entries *> entries_{ nullptr };
+    std::mutex mutex_;
+    // Every snapshot ever published, as readers may still use the older ones.
+    std::vector<std::unique_ptr<const Entries>> snapshots_;
+
+    static const Member *find(const Entries *entries, const char *name) {
+        if (entries) {
+            for (const Entry &entry : *entries) {
+                if (entry.name == name) {
+                    return &entry.member;
+                }
+            }
+        }
+        return nullptr;
+    }
+
+public:
+    template <typename Lookup>
+    Member get(const char *name, Lookup &&lookup) {
+        if (const Member *member =
+                    find(entries_.load(std::memory_order_acquire), name)) {
+            return *member;
+        }
+        std::lock_guard<std::mutex> lock{ mutex_ };
+        const Entries *current = entries_.load(std::memory_order_relaxed);
+        if (const Member *member = find(current, name)) {
+            return *member;
+        }
+        std::unique_ptr<Entries> updated{ current ? new Entries(*current)
+                                                  : new Entries() };
+        updated->push_back(Entry{ name, lookup() });
+        const Member result = updated->back().member;
+        snapshots_.push_back(std::move(updated));
+        entries_.store(snapshots_.back().get(), std::memory_order_release);
+        return result;
+    }
+};
+
+} // namespace detail
+
+/**
+ * Process-wide cache of class references as well as method, field and
+ * constructor IDs of the @p Peer class.
+ *
+ * Classes are promoted to global references on first use and kept for the
+ * lifetime of the library, which also guarantees that the cached IDs (which
+ * remain valid as long as the class is loaded) may be safely shared between
+ * all threads. Each member is cached separately for every name and signature,
+ * so after the first lookup no string-based JNI lookups are performed, and no
+ * locks are taken.
+ */
+template <typename Peer>
+struct ClassCache {
+    static const jni::Class<Peer> &get(jni::JNIEnv &env) {
+        return jni::Class<Peer>::Singleton(env);
+    }
+
+    template <typename Signature>
+    static jni::Method<Peer, Signature> method(jni::JNIEnv &env,
+                                               const char *name) {
+        static detail::MemberCache<jni::Method<Peer, Signature>> cache;
+        return cache.get(name, [&]() {
+            return get(env).template GetMethod<Signature>(env, name);
+        });
+    }
+
+    template <typename Signature>
+    static jni::StaticMethod<Peer, Signature> static_method(jni::JNIEnv &env,
+                                                            const char *name) {
+        static detail::MemberCache<jni::StaticMethod<Peer, Signature>> cache;
+        return cache.get(name, [&]() {
+            return get(env).template GetStaticMethod<Signature>(env, name);
+        });
+    }
+
+    template <typename JType>
+    static jni::Field<Peer, JType> field(jni::JNIEnv &env, const char *name) {
+        static detail::MemberCache<jni::Field<Peer, JType>> cache;
+        return cache.get(name, [&]() {
+            return get(env).template GetField<JType>(env, name);
+        });
+    }
+
+    template <typename JType>
+    static jni::StaticField<Peer, JType> static_field(jni::JNIEnv &env,
+                                                      const char *name) {
+        static detail::MemberCache<jni::StaticField<Peer, JType>> cache;
+        return cache.get(name, [&]() {
+            return get(env).template GetStaticField<JType>(env, name);
+        });
+    }
+
+    template <typename... Args>
+    static jni::Constructor<Peer, Args...> constructor(jni::JNIEnv &env) {
+        static detail::MemberCache<jni::Constructor<Peer, Args...>> cache;
+        return cache.get("<init>", [&]() {
+            return get(env).template GetConstructor<Args...>(env);
+        });
+    }
+};
+
+} // namespace utils
@@ -18,14 +18,17 @@
 
 #include "../jni_wrapper.hpp"
 
+#include "./class_cache.hpp"
+
 namespace utils {
 
 template <typename T, typename... Args>
 auto construct(jni::JNIEnv &env, const Args &... args) {
-    auto clazz = jni::Class<T>::Find(env);
-    auto ctor = clazz.template GetConstructor<
-            typename jni::RemoveUnique<Args>::Type...>(env);
-    return clazz.New(env, ctor, args...);
+    return ClassCache<T>::get(env).New(
+            env,
+            ClassCache<T>::template constructor<
+                    typename jni::RemoveUnique<Args>::Type...>(env),
+            args...);
 }
 
 } // namespace utils
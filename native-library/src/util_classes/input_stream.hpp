@@ -18,6 +18,8 @@
 
 #include "../jni_wrapper.hpp"
 
+#include "./class_cache.hpp"
+
 #include <avsystem/commons/avs_stream_simple_io.h>
 
 #include <functional>
@@ -30,12 +32,13 @@ class InputStream {
             jni::Object<InputStream> *input_stream =
                     static_cast<jni::Object<InputStream> *>(arg);
             auto arr = jni::Array<jni::jbyte>::New(*env, *inout_size);
-            int bytes_read =
-                    utils::AccessorBase<utils::InputStream>{ *env,
-                                                             *input_stream }
-                            .get_method<jni::jint(jni::Array<jni::jbyte>,
-                                                  jni::jint, jni::jint)>(
-                                    "read")(arr, 0, *inout_size);
+            int bytes_read = input_stream->Call(
+                    *env,
+                    ClassCache<InputStream>::method<jni::jint(
+                            jni::Array<jni::jbyte>, jni::jint, jni::jint)>(
+                            *env, "read"),
+                    arr, jni::jint{ 0 },
+                    static_cast<jni::jint>(*inout_size));
             if (bytes_read < 0) {
                 *inout_size = 0;
             } else {
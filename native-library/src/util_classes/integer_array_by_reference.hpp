@@ -20,6 +20,8 @@
 
 #include "./accessor_base.hpp"
 
+#include <vector>
+
 namespace utils {
 
 struct IntegerArrayByReference {
@@ -30,19 +32,25 @@ struct IntegerArrayByReference {
 
     static jni::Local<jni::Object<IntegerArrayByReference>>
     New(jni::JNIEnv &env) {
-        auto clazz = jni::Class<IntegerArrayByReference>::Find(env);
-        auto ctor = clazz.GetConstructor(env);
-        return clazz.New(env, ctor);
+        return ClassCache<IntegerArrayByReference>::get(env).New(
+                env, ClassCache<IntegerArrayByReference>::constructor<>(env));
+    }
+
+    static std::vector<jni::jint>
+    get(jni::JNIEnv &env,
+        const jni::Object<IntegerArrayByReference> &instance) {
+        auto accessor = AccessorBase<IntegerArrayByReference>{ env, instance };
+        // The whole array is copied at once, with a single JNI call.
+        return jni::Make<std::vector<jni::jint>>(
+                env, accessor.get_value<jni::Array<jni::jint>>("value"));
     }
 
     template <typename Func>
     static void for_each(jni::JNIEnv &env,
                          const jni::Object<IntegerArrayByReference> &instance,
                          Func &&func) {
-        auto accessor = AccessorBase<IntegerArrayByReference>{ env, instance };
-        auto value = accessor.get_value<jni::Array<jni::Integer>>("value");
-        for (jni::jsize i = 0; i < value.Length(env); ++i) {
-            func(jni::Unbox(env, value.Get(env, i)));
+        for (jni::jint value : get(env, instance)) {
+            func(value);
         }
     }
 };
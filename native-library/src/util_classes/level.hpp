@@ -33,11 +33,11 @@ struct Level {
 
     static jni::Local<jni::Object<Level>> from_native(jni::JNIEnv &env,
                                                       avs_log_level_t level) {
-        auto clazz = jni::Class<Level>::Find(env);
+        auto &clazz = ClassCache<Level>::get(env);
         auto get_enum_instance = [&](const std::string &name) {
             return clazz.Get(env,
-                             clazz.GetStaticField<jni::Object<Level>>(
-                                     env, name.c_str()));
+                             ClassCache<Level>::static_field<
+                                     jni::Object<Level>>(env, name.c_str()));
         };
         static std::unordered_map<avs_log_level_t, std::string> MAPPING{
             { AVS_LOG_TRACE, "FINEST" }, { AVS_LOG_DEBUG, "FINE" },
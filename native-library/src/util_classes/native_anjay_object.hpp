@@ -18,17 +18,17 @@
 
 #include "../jni_wrapper.hpp"
 
+#include "../native_input_context.hpp"
+#include "../native_output_context.hpp"
+
 #include "./accessor_base.hpp"
 #include "./attributes.hpp"
 #include "./exception.hpp"
 #include "./hash_map.hpp"
 #include "./integer_array_by_reference.hpp"
 #include "./map.hpp"
-#include "./native_input_context_pointer.hpp"
-#include "./native_output_context_pointer.hpp"
 #include "./optional.hpp"
 #include "./resource_def.hpp"
-#include "./resource_def_array_by_reference.hpp"
 
 #include <map>
 #include <optional>
@@ -102,49 +102,60 @@ struct NativeAnjayObject {
             return 0;
         }
 
-        template <typename Func>
-        int for_each_resource(anjay_iid_t iid, Func &&func) {
-            auto array_by_ref = ResourceDefArrayByReference::New(env_);
-            int result = get_method<jni::jint(
-                    jni::jint, jni::Object<ResourceDefArrayByReference>)>(
-                    "resources")(iid, array_by_ref);
+        jni::jlong get_resources_version() {
+            return get_method<jni::jlong()>("resourcesVersion")();
+        }
+
+        int get_resources(anjay_iid_t iid, std::vector<ResourceDef> &out) {
+            auto array_by_ref = IntegerArrayByReference::New(env_);
+            int result =
+                    get_method<jni::jint(jni::jint,
+                                         jni::Object<IntegerArrayByReference>)>(
+                            "resources")(iid, array_by_ref);
             if (result) {
                 return result;
             }
-            ResourceDefArrayByReference::for_each(env_, array_by_ref, func);
+            ResourceDef::from_triples(
+                    env_, IntegerArrayByReference::get(env_, array_by_ref),
+                    out);
             return 0;
         }
 
-        int resource_read(anjay_iid_t iid,
-                          anjay_rid_t rid,
-                          anjay_riid_t riid,
-                          anjay_output_ctx_t *ctx) {
-            return get_method<jni::jint(
-                    jni::jint, jni::jint, jni::jint,
-                    jni::Object<utils::NativeOutputContextPointer>)>(
-                    "resourceRead")(
-                    iid, rid, riid,
-                    utils::NativeOutputContextPointer::into_object(env_, ctx));
+        ::NativeOutputContext *get_output_context() {
+            return ::NativeOutputContext::into_native(
+                    env_, get_method<jni::Object<::NativeOutputContext>()>(
+                                  "outputContext")());
         }
 
-        int resource_write(anjay_iid_t iid,
-                           anjay_rid_t rid,
-                           anjay_riid_t riid,
-                           anjay_input_ctx_t *ctx) {
-            return get_method<jni::jint(
-                    jni::jint, jni::jint, jni::jint,
-                    jni::Object<utils::NativeInputContextPointer>)>(
-                    "resourceWrite")(
-                    iid, rid, riid,
-                    utils::NativeInputContextPointer::into_object(env_, ctx));
+        ::NativeInputContext *get_input_context() {
+            return ::NativeInputContext::into_native(
+                    env_, get_method<jni::Object<::NativeInputContext>()>(
+                                  "inputContext")());
+        }
+
+        void close_contexts() {
+            get_method<void()>("closeContexts")();
+        }
+
+        // NOTE: the output context returned by get_output_context() MUST be
+        // bound to the actual anjay_output_ctx_t before calling this.
+        int resource_read(anjay_iid_t iid, anjay_rid_t rid, anjay_riid_t riid) {
+            return get_method<jni::jint(jni::jint, jni::jint, jni::jint)>(
+                    "resourceRead")(iid, rid, riid);
+        }
+
+        // NOTE: the input context returned by get_input_context() MUST be
+        // bound to the actual anjay_input_ctx_t before calling this.
+        int resource_write(anjay_iid_t iid, anjay_rid_t rid, anjay_riid_t riid) {
+            return get_method<jni::jint(jni::jint, jni::jint, jni::jint)>(
+                    "resourceWrite")(iid, rid, riid);
         }
 
         int resource_execute(anjay_iid_t iid,
                              anjay_rid_t rid,
                              anjay_execute_ctx_t *ctx) {
-            auto clazz = jni::Class<HashMap>::Find(env_);
-            auto ctor = clazz.GetConstructor<>(env_);
-            auto args_map = clazz.New(env_, ctor);
+            auto args_map = ClassCache<HashMap>::get(env_).New(
+                    env_, ClassCache<HashMap>::constructor<>(env_));
 
             auto accessor = AccessorBase<HashMap>{ env_, args_map };
             auto args_map_inserter =
@@ -187,7 +198,7 @@ struct NativeAnjayObject {
             return get_method<jni::jint(jni::jint, jni::jint,
                                         jni::Object<Map>)>("resourceExecute")(
                     iid, rid,
-                    jni::Cast(env_, jni::Class<Map>::Find(env_), args_map));
+                    jni::Cast(env_, ClassCache<Map>::get(env_), args_map));
         }
 
         int resource_reset(anjay_iid_t iid, anjay_rid_t rid) {
@@ -37,9 +37,10 @@ struct NativePointer {
 
     static jni::Local<jni::Object<WrapperType>>
     into_object(jni::JNIEnv &env, NativeType *pointer) {
-        auto clazz = jni::Class<WrapperType>::Find(env);
-        auto ctor = clazz.template GetConstructor<jni::jlong>(env);
-        return clazz.New(env, ctor, reinterpret_cast<jni::jlong>(pointer));
+        return ClassCache<WrapperType>::get(env).New(
+                env,
+                ClassCache<WrapperType>::template constructor<jni::jlong>(env),
+                reinterpret_cast<jni::jlong>(pointer));
     }
 };
 
@@ -20,8 +20,8 @@
 
 #include <avsystem/commons/avs_time.h>
 
-#include "./construct.hpp"
-#include "./duration.hpp"
+#include "./accessor_base.hpp"
+#include "./exception.hpp"
 #include "./selectable_channel.hpp"
 
 namespace utils {
@@ -32,32 +32,30 @@ struct NativeUtils {
     }
 
     struct ReadyState {
+        // Values of java.nio.channels.SelectionKey.OP_* constants. These are
+        // part of the Java SE specification, so it's safe to hardcode them.
+        static constexpr jni::jint OP_READ = 1 << 0;
+        static constexpr jni::jint OP_WRITE = 1 << 2;
+        static constexpr jni::jint OP_CONNECT = 1 << 3;
+        static constexpr jni::jint OP_ACCEPT = 1 << 4;
+
         bool read;
         bool write;
         bool accept;
         bool connect;
 
-        static constexpr auto Name() {
-            return "com/avsystem/anjay/impl/NativeUtils$ReadyState";
-        }
-
         ReadyState()
                 : read(false), write(false), accept(false), connect(false) {}
 
-        ReadyState(jni::JNIEnv &env, const jni::Object<ReadyState> &state)
-                : ReadyState() {
-            auto accessor = AccessorBase<ReadyState>{ env, state };
-            read = accessor.get_value<jni::jboolean>("read");
-            write = accessor.get_value<jni::jboolean>("write");
-            accept = accessor.get_value<jni::jboolean>("accept");
-            connect = accessor.get_value<jni::jboolean>("connect");
-        }
+        explicit ReadyState(jni::jint ops)
+                : read(ops & OP_READ),
+                  write(ops & OP_WRITE),
+                  accept(ops & OP_ACCEPT),
+                  connect(ops & OP_CONNECT) {}
 
-        jni::Local<jni::Object<ReadyState>> into_java(jni::JNIEnv &env) {
-            return construct<ReadyState>(env, static_cast<jni::jboolean>(read),
-                                         static_cast<jni::jboolean>(write),
-                                         static_cast<jni::jboolean>(connect),
-                                         static_cast<jni::jboolean>(accept));
+        jni::jint into_ops() const {
+            return (read ? OP_READ : 0) | (write ? OP_WRITE : 0)
+                   | (accept ? OP_ACCEPT : 0) | (connect ? OP_CONNECT : 0);
         }
     };
 
@@ -66,15 +64,15 @@ struct NativeUtils {
                      const jni::Object<SelectableChannel> &channel,
                      avs_time_duration_t timeout,
                      ReadyState waitStates) {
-        return ReadyState(
-                env,
-                AccessorBase<NativeUtils>::get_static_method<
-                        jni::Object<ReadyState>(jni::Object<SelectableChannel>,
-                                                jni::Object<Duration>,
-                                                jni::Object<ReadyState>)>(
-                        env, "waitUntilReady")(
-                        channel, Duration::into_java(env, timeout),
-                        waitStates.into_java(env)));
+        int64_t timeout_ns;
+        if (avs_time_duration_to_scalar(&timeout_ns, AVS_TIME_NS, timeout)) {
+            avs_throw(IllegalArgumentException(env, "duration is invalid"));
+        }
+        return ReadyState(AccessorBase<NativeUtils>::get_static_method<jni::jint(
+                                  jni::Object<SelectableChannel>, jni::jlong,
+                                  jni::jint)>(env, "waitUntilReady")(
+                channel, static_cast<jni::jlong>(timeout_ns),
+                waitStates.into_ops()));
     }
 };
 
@@ -18,6 +18,8 @@
 
 #include "../jni_wrapper.hpp"
 
+#include "./class_cache.hpp"
+
 #include <avsystem/commons/avs_stream_simple_io.h>
 
 #include <functional>
@@ -32,9 +34,11 @@ class OutputStream {
             std::vector<jni::jbyte> data_vec((const uint8_t *) buffer,
                                              (const uint8_t *) buffer
                                                      + *inout_size);
-            utils::AccessorBase<OutputStream>{ *env, *output_stream }
-                    .get_method<void(jni::Array<jni::jbyte>)>("write")(
-                            jni::Make<jni::Array<jni::jbyte>>(*env, data_vec));
+            output_stream->Call(
+                    *env,
+                    ClassCache<OutputStream>::method<void(
+                            jni::Array<jni::jbyte>)>(*env, "write"),
+                    jni::Make<jni::Array<jni::jbyte>>(*env, data_vec));
             return 0;
         });
     } catch (...) {
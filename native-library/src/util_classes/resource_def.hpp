@@ -20,9 +20,11 @@
 
 #include "../jni_wrapper.hpp"
 
-#include "./accessor_base.hpp"
+#include "./exception.hpp"
 #include "./resource_kind.hpp"
 
+#include <limits>
+#include <string>
 #include <vector>
 
 namespace utils {
@@ -36,17 +38,29 @@ struct ResourceDef {
         return "com/avsystem/anjay/AnjayObject$ResourceDef";
     }
 
-    static ResourceDef into_native(jni::JNIEnv &env,
-                                   const jni::Object<ResourceDef> &instance) {
-        auto accessor = AccessorBase<ResourceDef>{ env, instance };
-        return ResourceDef{
-            static_cast<anjay_rid_t>(accessor.get_value<int>("rid")),
-            ResourceKind::into_native(
-                    env,
-                    accessor.get_value<jni::Object<utils::ResourceKind>>(
-                            "kind")),
-            accessor.get_value<bool>("present")
-        };
+    // Unmarshals resource definitions passed from Java as flat
+    // (rid, kind ordinal, present) triples, see NativeAnjayObject.resources().
+    static void from_triples(jni::JNIEnv &env,
+                             const std::vector<jni::jint> &triples,
+                             std::vector<ResourceDef> &out) {
+        if (triples.size() % 3 != 0) {
+            avs_throw(IllegalArgumentException(
+                    env, "malformed resource definitions array of length "
+                                 + std::to_string(triples.size())));
+        }
+        out.reserve(out.size() + triples.size() / 3);
+        for (size_t i = 0; i < triples.size(); i += 3) {
+            jni::jint rid = triples[i];
+            if (rid < std::numeric_limits<anjay_rid_t>::min()
+                    || rid > std::numeric_limits<anjay_rid_t>::max()) {
+                avs_throw(IllegalArgumentException(
+                        env, "rid out of range: " + std::to_string(rid)));
+            }
+            out.push_back(ResourceDef{
+                    static_cast<anjay_rid_t>(rid),
+                    ResourceKind::from_ordinal(env, triples[i + 1]),
+                    triples[i + 2] != 0 });
+        }
     }
 
 private:
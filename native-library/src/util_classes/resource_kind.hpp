@@ -21,10 +21,12 @@
 #include "../jni_wrapper.hpp"
 
 #include "./accessor_base.hpp"
+#include "./class_cache.hpp"
 #include "./exception.hpp"
 
 #include <string>
 #include <unordered_map>
+#include <vector>
 
 namespace utils {
 
@@ -53,6 +55,30 @@ struct ResourceKind {
         }
         return mapped_to->second;
     }
+
+    static anjay_dm_resource_kind_t from_ordinal(jni::JNIEnv &env,
+                                                 jni::jint ordinal) {
+        // Built once from ResourceKind.values(), so that the order of the
+        // enum constants is not hardcoded on this side.
+        static const std::vector<anjay_dm_resource_kind_t> BY_ORDINAL = [&]() {
+            auto &clazz = ClassCache<ResourceKind>::get(env);
+            auto values = clazz.Call(
+                    env,
+                    ClassCache<ResourceKind>::static_method<
+                            jni::Array<jni::Object<ResourceKind>>()>(env,
+                                                                     "values"));
+            std::vector<anjay_dm_resource_kind_t> kinds;
+            for (jni::jsize i = 0; i < values.Length(env); ++i) {
+                kinds.push_back(into_native(env, values.Get(env, i)));
+            }
+            return kinds;
+        }();
+        if (ordinal < 0 || static_cast<size_t>(ordinal) >= BY_ORDINAL.size()) {
+            avs_throw(IllegalArgumentException(
+                    env, "Unsupported enum ordinal: " + std::to_string(ordinal)));
+        }
+        return BY_ORDINAL[static_cast<size_t>(ordinal)];
+    }
 };
 
 } // namespace utils